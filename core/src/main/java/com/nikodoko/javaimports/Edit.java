@@ -0,0 +1,58 @@
+package com.nikodoko.javaimports;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * A change to a source file: replaces the characters between {@code start} (inclusive) and {@code
+ * end} (exclusive) with {@code text}.
+ *
+ * <p>Offsets always refer to the original source, so a list of edits can be applied in one pass as
+ * long as it is sorted and edits do not overlap.
+ */
+public record Edit(int start, int end, String text) {
+  public static Edit insertion(int position, String text) {
+    return new Edit(position, position, text);
+  }
+
+  public static Edit deletion(int start, int end) {
+    return new Edit(start, end, "");
+  }
+
+  /** Returns the result of applying sorted, non overlapping {@code edits} to {@code source}. */
+  public static String apply(String source, List<Edit> edits) {
+    if (edits.isEmpty()) {
+      return source;
+    }
+
+    var size = source.length();
+    for (var edit : edits) {
+      size += edit.text.length() - (edit.end - edit.start);
+    }
+
+    var sb = new StringBuilder(size);
+    var pos = 0;
+    for (var edit : edits) {
+      sb.append(source, pos, edit.start).append(edit.text);
+      pos = edit.end;
+    }
+
+    return sb.append(source, pos, source.length()).toString();
+  }
+
+  /**
+   * Writes the result of applying sorted, non overlapping {@code edits} to {@code source}, without
+   * building it in memory.
+   */
+  public static void write(String source, List<Edit> edits, Writer out) throws IOException {
+    var pos = 0;
+    for (var edit : edits) {
+      out.write(source, pos, edit.start - pos);
+      out.write(edit.text);
+      pos = edit.end;
+    }
+
+    out.write(source, pos, source.length() - pos);
+  }
+}
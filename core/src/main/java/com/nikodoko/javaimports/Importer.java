@@ -4,7 +4,9 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.collect.Range;
+import com.nikodoko.javaimports.common.Deadline;
 import com.nikodoko.javaimports.common.Import;
+import com.nikodoko.javaimports.common.InstrumentedExecutor;
 import com.nikodoko.javaimports.common.Selector;
 import com.nikodoko.javaimports.common.telemetry.Logs;
 import com.nikodoko.javaimports.common.telemetry.Metrics;
@@ -14,18 +16,20 @@ import com.nikodoko.javaimports.fixer.Fixer;
 import com.nikodoko.javaimports.fixer.Result;
 import com.nikodoko.javaimports.parser.ParsedFile;
 import com.nikodoko.javaimports.parser.Parser;
+import io.opentracing.Span;
 import java.io.IOError;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Clock;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -80,6 +84,48 @@ public final class Importer {
    */
   public String addUsedImports(final Path filename, final String javaCode)
       throws ImporterException {
+    return addUsedImports(filename, javaCode, Deadline.none());
+  }
+
+  /**
+   * Works like {@link #addUsedImports(Path, String)}, but stops looking for imports once {@code
+   * deadline} is reached, and adds the ones found so far.
+   *
+   * @param filename the absolute path to the file to fix
+   * @param javaCode the source code to fix
+   * @param deadline when to give up looking for more imports
+   * @throws ImporterException if the source code cannot be parsed
+   */
+  public String addUsedImports(final Path filename, final String javaCode, Deadline deadline)
+      throws ImporterException {
+    return Edit.apply(javaCode, findEdits(filename, javaCode, deadline));
+  }
+
+  /**
+   * Works like {@link #addUsedImports}, but returns the changes to make to {@code javaCode} instead
+   * of the modified source.
+   *
+   * <p>The edits are sorted and do not overlap. Their offsets refer to {@code javaCode}.
+   *
+   * @param filename the absolute path to the file to fix
+   * @param javaCode the source code to fix
+   * @throws ImporterException if the source code cannot be parsed
+   */
+  public List<Edit> findEdits(final Path filename, final String javaCode) throws ImporterException {
+    return findEdits(filename, javaCode, Deadline.none());
+  }
+
+  /**
+   * Works like {@link #findEdits(Path, String)}, but stops looking for imports once {@code
+   * deadline} is reached.
+   *
+   * @param filename the absolute path to the file to fix
+   * @param javaCode the source code to fix
+   * @param deadline when to give up looking for more imports
+   * @throws ImporterException if the source code cannot be parsed
+   */
+  public List<Edit> findEdits(final Path filename, final String javaCode, Deadline deadline)
+      throws ImporterException {
     Metrics.count("importer.runs", 1);
     long start = clock.millis();
     var span = Traces.createSpan("Importer.addUsedImports");
@@ -87,29 +133,31 @@ public final class Importer {
       Optional<ParsedFile> f = parser.parse(filename, javaCode, null);
       if (f.isEmpty()) {
         log.log(Level.WARNING, "file is empty");
-        return javaCode;
+        return List.of();
       }
 
-      Result fixes = getFixes(filename, f.get());
-      return applyFixes(f.get(), javaCode, fixes);
+      Result fixes = getFixes(filename, f.get(), deadline);
+      return toEdits(f.get(), javaCode, fixes);
     } finally {
       span.finish();
       var elapsed = clock.millis() - start;
       Metrics.gauge("importer.duration", elapsed);
+      options.executors().forEach(InstrumentedExecutor::reportMetrics);
       log.log(Level.INFO, String.format("total time: %d ms", elapsed));
     }
   }
 
-  private Result getFixes(Path filename, ParsedFile f) throws ImporterException {
+  private Result getFixes(Path filename, ParsedFile f, Deadline deadline) throws ImporterException {
     var span = Traces.createSpan("Importer.getFixes");
     try (var __ = Traces.activate(span)) {
-      return getFixesInstrumented(filename, f);
+      return getFixesInstrumented(filename, f, deadline);
     } finally {
       span.finish();
     }
   }
 
-  private Result getFixesInstrumented(Path filename, ParsedFile f) throws ImporterException {
+  private Result getFixesInstrumented(Path filename, ParsedFile f, Deadline deadline)
+      throws ImporterException {
     Fixer fixer = Fixer.init(f);
     // Initial run with the current file only.
     Result r = fixer.tryToFix();
@@ -121,6 +169,11 @@ public final class Importer {
       return r;
     }
 
+    // Selecting the environment can start expensive work in the background (like a bazel query), so
+    // do it early to overlap it with parsing siblings. If siblings are enough, it will simply never
+    // be used.
+    var environment = Environments.autoSelect(filename, f.pkg(), options, deadline);
+
     // Add package information
     Set<ParsedFile> siblings = parseSiblings(filename, f.pkg());
     fixer.addSiblings(siblings);
@@ -135,18 +188,30 @@ public final class Importer {
     // If other files in the package contain identifiers that also are in the standard library, we
     // want to resolve them before so as to avoid adding uneeded imports, so we need to add both the
     // stdlib provider and the resolver at the same time.
-    var environment = Environments.autoSelect(filename, f.pkg(), options);
     fixer.addStdlibProvider(options.stdlib());
     fixer.addEnvironment(environment);
 
-    do {
-      r = fixer.tryToFix();
-      if (r.done()) {
-        return r;
+    try {
+      do {
+        if (options.speculativePrecision()) {
+          environment.prefetchNextPrecision();
+        }
+
+        r = fixer.tryToFix();
+        if (r.done()) {
+          return r;
+        }
+      } while (!deadline.isReached() && environment.increasePrecision());
+
+      // If the deadline was reached, the environment only provides what it had loaded by then
+      if (deadline.isReached()) {
+        log.log(Level.INFO, "deadline reached, using what was found so far");
       }
-    } while (environment.increasePrecision());
 
-    return fixer.lastTryToFix();
+      return fixer.lastTryToFix();
+    } finally {
+      environment.cancelPrefetch();
+    }
   }
 
   // Find and parse all java files in the directory of filename, excepting filename itself
@@ -154,19 +219,19 @@ public final class Importer {
       throws ImporterException {
     var span = Traces.createSpan("Importer.parseSiblings");
     try (var __ = Traces.activate(span)) {
-      return parseSiblingsInstrumented(filename, pkg);
+      return parseSiblingsInstrumented(span, filename, pkg);
     } finally {
       span.finish();
     }
   }
 
-  private Set<ParsedFile> parseSiblingsInstrumented(final Path filename, Selector pkg)
+  private Set<ParsedFile> parseSiblingsInstrumented(Span span, final Path filename, Selector pkg)
       throws ImporterException {
-    Map<Path, String> sources = new HashMap<>();
+    List<Path> paths;
     try {
       // Retrieve all java files in the parent directory of filename, excluding filename and not
       // searching recursively
-      List<Path> paths =
+      paths =
           Files.find(
                   filename.getParent(),
                   1,
@@ -174,23 +239,33 @@ public final class Importer {
                       path.toString().endsWith(".java")
                           && !path.getFileName().equals(filename.getFileName()))
               .collect(Collectors.toList());
-
-      for (Path p : paths) {
-        sources.put(p, new String(Files.readAllBytes(p), UTF_8));
-      }
     } catch (IOException e) {
       throw new IOError(e);
     }
 
+    var tasks =
+        paths.stream()
+            .map(
+                p ->
+                    CompletableFuture.supplyAsync(
+                        () -> parseSibling(span, p, pkg), options.parsingExecutor()))
+            .toList();
+
     Set<ParsedFile> siblings = new HashSet<>();
     List<ImporterException> exceptions = new ArrayList<>();
     // Try to parse all files even if one is invalid (so that the user can fix everything without
     // rerunning the tool), but fail if one is wrong.
-    for (Map.Entry<Path, String> source : sources.entrySet()) {
+    for (var task : tasks) {
       try {
-        parser.parse(source.getKey(), source.getValue(), pkg).ifPresent(siblings::add);
-      } catch (ImporterException e) {
-        exceptions.add(e);
+        task.join().ifPresent(siblings::add);
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof ImporterException ie) {
+          exceptions.add(ie);
+        } else if (e.getCause() instanceof Error err) {
+          throw err;
+        } else {
+          throw e;
+        }
       }
     }
 
@@ -201,35 +276,46 @@ public final class Importer {
     return siblings;
   }
 
+  private Optional<ParsedFile> parseSibling(Span span, Path path, Selector pkg) {
+    try (var __ = Traces.activate(span)) {
+      return parser.parse(path, new String(Files.readAllBytes(path), UTF_8), pkg);
+    } catch (IOException e) {
+      throw new IOError(e);
+    } catch (ImporterException e) {
+      throw new CompletionException(e);
+    }
+  }
+
   private String buildImportStatements(Set<Import> fixes) {
     // XXX: we don't really need to order imports alphabetically here, but we do it simply because
     // it's harder to test if the order is not deterministic
     return fixes.stream().map(Import::toStatement).sorted().collect(Collectors.joining(""));
   }
 
-  // Add all fixes to the original source code
-  private String applyFixes(ParsedFile file, final String original, Result result) {
-    if (result.fixes().isEmpty() && file.duplicates().isEmpty()) {
-      return original;
-    }
+  // Translate all fixes to edits of the original source code
+  private List<Edit> toEdits(ParsedFile file, final String original, Result result) {
+    var edits = new ArrayList<Edit>();
+    if (!result.fixes().isEmpty()) {
+      int insertPos = 0;
+      if (file.packageEndPos() > -1) {
+        insertPos = original.indexOf(";", file.packageEndPos()) + 1;
+      }
 
-    String statements = buildImportStatements(result.fixes());
-    int insertPos = 0;
-    if (file.packageEndPos() > -1) {
-      insertPos = original.indexOf(";", file.packageEndPos()) + 1;
+      // We brutally insert imports just after the package clause, on the same line. This is not
+      // pretty, but we do not care: our goal is to find imports, not to organize them nicely. This
+      // job is left to other tools.
+      // XXX: it would however make sense to add a "useless import removal" feature, as javaimports
+      // should cover everything that has to do with imports in a file.
+      edits.add(Edit.insertion(insertPos, buildImportStatements(result.fixes())));
     }
 
-    // We brutally insert imports just after the package clause, on the same line. This is not
-    // pretty, but we do not care: our goal is to find imports, not to organize them nicely. This
-    // job is left to other tools.
-    // XXX: it would however make sense to add a "useless import removal" feature, as javaimports
-    // should cover everything that has to do with imports in a file.
-    StringBuilder sb = new StringBuilder(original);
-    sb.insert(insertPos, statements);
-
     for (Range<Integer> duplicate : file.duplicates()) {
-      sb.delete(duplicate.lowerEndpoint(), duplicate.upperEndpoint());
+      edits.add(Edit.deletion(duplicate.lowerEndpoint(), duplicate.upperEndpoint()));
     }
-    return sb.toString();
+
+    // Insertions come first, so that they are not swallowed by a deletion starting at the same
+    // position
+    edits.sort(Comparator.comparingInt(Edit::start).thenComparingInt(Edit::end));
+    return edits;
   }
 }
@@ -0,0 +1,195 @@
+package com.nikodoko.javaimports;
+
+import com.nikodoko.javaimports.common.Utils;
+import com.nikodoko.javaimports.common.telemetry.Logs;
+import com.nikodoko.javaimports.common.telemetry.Metrics;
+import com.nikodoko.javaimports.common.telemetry.Tag;
+import com.nikodoko.javaimports.common.telemetry.Traces;
+import com.nikodoko.javaimports.environment.maven.PomIndex;
+import com.nikodoko.javaimports.environment.maven.VersionCatalog;
+import com.nikodoko.javaimports.environment.shared.LazyJar;
+import com.nikodoko.javaimports.environment.shared.SymbolTable;
+import io.opentracing.Span;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the {@link SymbolTable} of a set of jars, and the {@link PomIndex} and {@link
+ * VersionCatalog} of a set of POMs, ahead of time so that subsequent runs of the {@link Importer}
+ * can look them up instead of reading them again.
+ *
+ * <p>Indexing is incremental: jars and POMs that have not been modified since they were last
+ * indexed are not read again, so that refreshing the indexes of a whole Maven repository is cheap.
+ * Indexes are replaced atomically, so it is safe to index while other runs are using them.
+ */
+public final class Indexer {
+  private static final Logger log = Logs.getLogger(Indexer.class.getName());
+  private static final Clock clock = Clock.systemDefaultZone();
+  private static final String JAR_EXTENSION = ".jar";
+  private static final String POM_EXTENSION = ".pom";
+
+  /** How many jars and POMs were found, and how many of them had to be read. */
+  public record Result(int jars, int jarsRead, int poms, int pomsRead) {}
+
+  private final Options options;
+
+  public Indexer(Options options) {
+    this.options = options;
+  }
+
+  /**
+   * Indexes all the jars and POMs in {@code roots}, which can be files or directories to search in,
+   * and updates the indexes of the cache directory with the result.
+   *
+   * <p>Jars and POMs indexed previously but outside of {@code roots} are kept, as long as they
+   * still exist and have not been modified since.
+   */
+  public Result index(List<Path> roots) throws IOException {
+    var span = Traces.createSpan("Indexer.index", new Tag("roots", roots));
+    var start = clock.millis();
+    try (var __ = Traces.activate(span)) {
+      return indexInstrumented(span, roots);
+    } finally {
+      span.finish();
+      var elapsed = clock.millis() - start;
+      Metrics.gauge("indexer.duration", elapsed);
+      log.log(Level.INFO, String.format("total time: %d ms", elapsed));
+    }
+  }
+
+  private Result indexInstrumented(Span span, List<Path> roots) throws IOException {
+    var cache =
+        options
+            .cacheDirectory()
+            .orElseThrow(() -> new IllegalStateException("indexing requires a cache"));
+    var files = findFiles(span, roots);
+    var jars = files.stream().filter(p -> p.toString().endsWith(JAR_EXTENSION)).toList();
+    var poms = files.stream().filter(p -> p.toString().endsWith(POM_EXTENSION)).toList();
+
+    var jarsRead = indexJars(span, SymbolTable.location(cache), jars);
+    var pomsRead = PomIndex.refresh(PomIndex.location(cache), poms, options.archiveExecutor());
+    var artifacts = poms.stream().flatMap(p -> artifactDirectory(p).stream()).distinct().toList();
+    var artifactsListed = VersionCatalog.refresh(VersionCatalog.location(cache), artifacts);
+    var result = new Result(jars.size(), jarsRead, poms.size(), pomsRead);
+    Traces.addTags(
+        span,
+        new Tag("jars", result.jars()),
+        new Tag("jars_read", result.jarsRead()),
+        new Tag("poms", result.poms()),
+        new Tag("poms_read", result.pomsRead()),
+        new Tag("artifacts", artifacts.size()),
+        new Tag("artifacts_listed", artifactsListed));
+    Metrics.gauge("indexer.jars_read", result.jarsRead());
+    Metrics.gauge("indexer.poms_read", result.pomsRead());
+    log.info(String.format("indexed %s to %s", result, cache));
+    return result;
+  }
+
+  // In a Maven repository, POMs are stored as <artifactId>/<version>/<artifactId>-<version>.pom
+  private static Optional<Path> artifactDirectory(Path pom) {
+    var version = pom.getParent();
+    var artifact = version == null ? null : version.getParent();
+    if (artifact == null) {
+      return Optional.empty();
+    }
+
+    var expected =
+        String.format("%s-%s%s", artifact.getFileName(), version.getFileName(), POM_EXTENSION);
+    return pom.getFileName().toString().equals(expected) ? Optional.of(artifact) : Optional.empty();
+  }
+
+  // A Maven repository can contain hundreds of thousands of files, so each directory directly
+  // under a root is walked separately, on the archive executor
+  private List<Path> findFiles(Span span, List<Path> roots) throws IOException {
+    var tasks = new ArrayList<CompletableFuture<List<Path>>>();
+    for (var root : roots) {
+      if (!Files.isDirectory(root)) {
+        tasks.add(CompletableFuture.completedFuture(List.of(root.toAbsolutePath())));
+        continue;
+      }
+
+      try (var children = Files.list(root.toAbsolutePath())) {
+        for (var child : children.toList()) {
+          tasks.add(
+              CompletableFuture.supplyAsync(() -> walk(span, child), options.archiveExecutor()));
+        }
+      }
+    }
+
+    return Utils.sequence(tasks).join().stream()
+        .flatMap(List::stream)
+        .distinct()
+        .collect(Collectors.toList());
+  }
+
+  private static List<Path> walk(Span span, Path directory) {
+    try (var __ = Traces.activate(span);
+        var paths = Files.walk(directory)) {
+      return paths
+          .filter(p -> p.toString().endsWith(JAR_EXTENSION) || p.toString().endsWith(POM_EXTENSION))
+          .filter(Files::isRegularFile)
+          .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // Returns the number of jars that had to be read
+  private int indexJars(Span span, Path table, List<Path> jars) throws IOException {
+    var previous = SymbolTable.open(table);
+    // Including jars indexed by previous runs on other roots. They are copied as they are, without
+    // decoding their imports.
+    var kept = previous.map(SymbolTable::unmodified).orElseGet(BitSet::new);
+    var tasks = new ArrayList<CompletableFuture<Optional<SymbolTable.Jar>>>();
+    for (var jar : jars) {
+      if (previous.isPresent() && previous.get().find(jar).isPresent()) {
+        continue;
+      }
+
+      tasks.add(load(span, jar));
+    }
+
+    var all = new ArrayList<SymbolTable.Jar>();
+    Utils.sequence(tasks).join().forEach(j -> j.ifPresent(all::add));
+    SymbolTable.write(table, all, previous, kept);
+    return tasks.size();
+  }
+
+  // Jars that cannot be read are left out of the table rather than indexed as empty, so that runs
+  // keep reading them directly until they can be indexed
+  private CompletableFuture<Optional<SymbolTable.Jar>> load(Span span, Path jar) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try (var __ = Traces.activate(span)) {
+            // Read the modification time first, so that a jar modified while being indexed is seen
+            // as stale rather than as up to date
+            var lastModified = lastModified(jar);
+            var importables = LazyJar.readImportables(jar);
+            return Optional.of(new SymbolTable.Jar(jar, lastModified, importables));
+          } catch (Exception e) {
+            log.log(Level.WARNING, "could not index " + jar, e);
+            return Optional.empty();
+          }
+        },
+        options.archiveExecutor());
+  }
+
+  private static long lastModified(Path jar) {
+    try {
+      return Files.getLastModifiedTime(jar).toMillis();
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+}
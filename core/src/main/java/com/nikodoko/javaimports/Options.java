@@ -1,34 +1,73 @@
 package com.nikodoko.javaimports;
 
+import com.nikodoko.javaimports.common.InstrumentedExecutor;
 import com.nikodoko.javaimports.stdlib.StdlibProvider;
 import com.nikodoko.javaimports.stdlib.StdlibProviders;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 /** {@link Importer} options */
 public class Options {
   /** Do not use the stdlib by default. */
   public static final StdlibProvider DEFAULT_STDLIB_PROVIDER = StdlibProviders.empty();
+
   /** Do not use multithreading by default. */
   public static final int DEFAULT_NUM_THREADS = 0;
+
+  /** Run I/O bound tasks on platform threads by default. */
+  public static final boolean DEFAULT_USE_VIRTUAL_THREADS = false;
+
+  /** Only do the work of a precision level once the previous one failed by default. */
+  public static final boolean DEFAULT_SPECULATIVE_PRECISION = false;
+
   /** Do not use debug logging by default. */
   public static final boolean DEFAULT_IS_DEBUG = false;
+
   /** Use local maven repository by default. */
   public static final Path DEFAULT_REPOSITORY =
       Paths.get(System.getProperty("user.home"), ".m2/repository");
 
+  /** Where the CLI persists intermediate results, in the user's home. */
+  public static final Path DEFAULT_CACHE_DIRECTORY =
+      Paths.get(System.getProperty("user.home"), ".javaimports", "cache");
+
   boolean debug;
   Path repository;
   StdlibProvider stdlib;
-  Executor executor;
-
-  public Options(boolean debug, Path repository, StdlibProvider stdlib, int numThreads) {
+  InstrumentedExecutor parsingExecutor;
+  InstrumentedExecutor archiveExecutor;
+  InstrumentedExecutor processExecutor;
+  boolean speculativePrecision;
+  Optional<Path> cacheDirectory;
+
+  public Options(
+      boolean debug,
+      Path repository,
+      StdlibProvider stdlib,
+      int parsingThreads,
+      int archiveThreads,
+      boolean useVirtualThreads,
+      boolean speculativePrecision,
+      Optional<Path> cacheDirectory) {
     this.debug = debug;
     this.repository = repository;
     this.stdlib = stdlib;
-    this.executor = numThreads != 0 ? Executors.newFixedThreadPool(numThreads) : Runnable::run;
+    this.parsingExecutor = InstrumentedExecutor.fixed("parsing", parsingThreads);
+    if (useVirtualThreads) {
+      this.archiveExecutor = InstrumentedExecutor.virtual("archive");
+      this.processExecutor = InstrumentedExecutor.virtual("process");
+    } else {
+      this.archiveExecutor = InstrumentedExecutor.fixed("archive", archiveThreads);
+      // Tasks waiting on a process hold their thread until it exits, and the process itself waits
+      // for its output to be drained by other tasks, so they can neither share a bounded pool nor
+      // run inline, whatever the number of threads
+      this.processExecutor = InstrumentedExecutor.unbounded("process");
+    }
+    this.speculativePrecision = speculativePrecision;
+    this.cacheDirectory = cacheDirectory;
   }
 
   /** Specific directory to use as a dependency repository. */
@@ -46,16 +85,51 @@ public class Options {
     return stdlib;
   }
 
-  /** The executor to use to run parallel tasks */
-  public Executor executor() {
-    return executor;
+  /** The executor to use to parse source files in parallel. */
+  public Executor parsingExecutor() {
+    return parsingExecutor;
+  }
+
+  /** The executor to use to read POMs and JARs in parallel. */
+  public Executor archiveExecutor() {
+    return archiveExecutor;
+  }
+
+  /** The executor to use to run and wait on external processes. */
+  public Executor processExecutor() {
+    return processExecutor;
+  }
+
+  /**
+   * Whether to start the work of the next precision level in the background while trying to fix
+   * imports with the current one.
+   */
+  public boolean speculativePrecision() {
+    return speculativePrecision;
+  }
+
+  List<InstrumentedExecutor> executors() {
+    return List.of(parsingExecutor, archiveExecutor, processExecutor);
+  }
+
+  /**
+   * The directory in which results that can be reused across runs are persisted, if caching is
+   * enabled.
+   */
+  public Optional<Path> cacheDirectory() {
+    return cacheDirectory;
   }
 
   public static class Builder {
     boolean debug = DEFAULT_IS_DEBUG;
     Path repository = DEFAULT_REPOSITORY;
     StdlibProvider stdlib = DEFAULT_STDLIB_PROVIDER;
-    int numThreads = DEFAULT_NUM_THREADS;
+    int parsingThreads = DEFAULT_NUM_THREADS;
+    int archiveThreads = DEFAULT_NUM_THREADS;
+    boolean useVirtualThreads = DEFAULT_USE_VIRTUAL_THREADS;
+    boolean speculativePrecision = DEFAULT_SPECULATIVE_PRECISION;
+    // Opt-in, so that library users and tests never depend on what earlier runs left behind
+    Optional<Path> cacheDirectory = Optional.empty();
 
     public Builder() {}
 
@@ -74,13 +148,72 @@ public class Options {
       return this;
     }
 
+    /** Use {@code numThreads} threads both for parsing and for reading dependencies. */
     public Builder numThreads(int numThreads) {
-      this.numThreads = numThreads;
+      this.parsingThreads = numThreads;
+      this.archiveThreads = numThreads;
+      return this;
+    }
+
+    public Builder parsingThreads(int parsingThreads) {
+      this.parsingThreads = parsingThreads;
+      return this;
+    }
+
+    public Builder archiveThreads(int archiveThreads) {
+      this.archiveThreads = archiveThreads;
+      return this;
+    }
+
+    /**
+     * Size the executors according to the machine: one parsing thread per processor, and twice as
+     * many threads to read dependencies as this mixes I/O and decompression.
+     */
+    public Builder adaptiveThreads() {
+      var processors = Runtime.getRuntime().availableProcessors();
+      this.parsingThreads = processors;
+      this.archiveThreads = 2 * processors;
+      return this;
+    }
+
+    /**
+     * Read dependencies and wait on external processes using virtual threads (or an unbounded
+     * thread pool if they are not available), ignoring {@link #archiveThreads(int)}.
+     */
+    public Builder useVirtualThreads(boolean useVirtualThreads) {
+      this.useVirtualThreads = useVirtualThreads;
+      return this;
+    }
+
+    /**
+     * Start the work of the next precision level in the background while trying to fix imports with
+     * the current one, trading CPU time for latency when more precision ends up being needed.
+     */
+    public Builder speculativePrecision(boolean speculativePrecision) {
+      this.speculativePrecision = speculativePrecision;
+      return this;
+    }
+
+    public Builder cacheDirectory(Path cacheDirectory) {
+      this.cacheDirectory = Optional.of(cacheDirectory);
+      return this;
+    }
+
+    public Builder noCache() {
+      this.cacheDirectory = Optional.empty();
       return this;
     }
 
     public Options build() {
-      return new Options(debug, repository, stdlib, numThreads);
+      return new Options(
+          debug,
+          repository,
+          stdlib,
+          parsingThreads,
+          archiveThreads,
+          useVirtualThreads,
+          speculativePrecision,
+          cacheDirectory);
     }
   }
 
@@ -4,26 +4,36 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.googlejavaformat.java.Formatter;
 import com.google.googlejavaformat.java.FormatterException;
+import com.google.googlejavaformat.java.ImportOrderer;
+import com.google.googlejavaformat.java.JavaFormatterOptions;
+import com.google.googlejavaformat.java.RemoveUnusedImports;
+import com.nikodoko.javaimports.Edit;
 import com.nikodoko.javaimports.Importer;
 import com.nikodoko.javaimports.ImporterException;
+import com.nikodoko.javaimports.Indexer;
 import com.nikodoko.javaimports.Options;
+import com.nikodoko.javaimports.common.Deadline;
 import com.nikodoko.javaimports.common.telemetry.Logs;
 import com.nikodoko.javaimports.common.telemetry.Metrics;
 import com.nikodoko.javaimports.common.telemetry.MetricsConfiguration;
 import com.nikodoko.javaimports.common.telemetry.Traces;
+import com.nikodoko.javaimports.environment.bazel.BazelEnvironment;
 import com.nikodoko.javaimports.stdlib.StdlibProviders;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /** The main class for the CLI */
 public final class CLI {
+
   private final PrintWriter errWriter;
   private final PrintWriter outWriter;
 
@@ -57,6 +67,10 @@ public final class CLI {
       out.flush();
     }
 
+    // Release the output before waiting, so that callers do not have to wait for work that is only
+    // useful to subsequent runs
+    out.close();
+    BazelEnvironment.awaitPendingRefreshes();
     System.exit(result);
   }
 
@@ -68,16 +82,30 @@ public final class CLI {
       throw new UsageException(e.getMessage());
     }
 
-    if (params.file() == null && !(params.help() || params.version())) {
+    if (params.command() == CLIOptions.Command.FIX
+        && params.file() == null
+        && !(params.help() || params.version())) {
       throw new UsageException("please provide a file");
     }
 
+    if (params.output() == CLIOptions.Output.EDITS && params.replace()) {
+      throw new UsageException("--output=edits cannot be used with --replace");
+    }
+
     return params;
   }
 
-  private String googleFormat(String code) {
+  private String googleFormat(CLIOptions.Format format, String code) {
     try {
-      return new Formatter().formatSourceAndFixImports(code);
+      if (format == CLIOptions.Format.FILE) {
+        return new Formatter().formatSourceAndFixImports(code);
+      }
+
+      // Only the import block needs to be tidied after adding imports. Finding unused imports still
+      // requires parsing the whole file, but neither that nor ordering them requires formatting it,
+      // which is what takes time for large files
+      return ImportOrderer.reorderImports(
+          RemoveUnusedImports.removeUnusedImports(code), JavaFormatterOptions.Style.GOOGLE);
     } catch (FormatterException e) {
       // Formatting is not vital, so print a warning and continue
       errWriter.println("WARNING: formatter exception: " + e);
@@ -88,12 +116,8 @@ public final class CLI {
   }
 
   private String readStdin() throws IOException {
-    BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
-    String line = "", file = "";
-    while ((line = br.readLine()) != null) {
-      file = file + line + "\n";
-    }
-    return file;
+    // Decode everything at once, big generated files can be piped through stdin
+    return new String(System.in.readAllBytes(), UTF_8);
   }
 
   private void instrument(CLIOptions params) {
@@ -139,6 +163,10 @@ public final class CLI {
       throw new UsageException();
     }
 
+    if (params.command() == CLIOptions.Command.INDEX) {
+      return index(params);
+    }
+
     Path path;
     String input;
     try {
@@ -160,21 +188,13 @@ public final class CLI {
       return 1;
     }
 
-    // TODO: make stdlib version a CLI option
-    // TODO: use number of threads according to processor
-    var optsBuilder =
-        Options.builder().debug(params.verbose()).stdlib(StdlibProviders.java8()).numThreads(8);
-    if (params.repository() != null) {
-      optsBuilder.repository(Paths.get(params.repository()));
-    }
-
-    if (params.verbose()) {
-      Logs.enable();
-    }
-
-    String fixed;
+    List<Edit> edits;
     try {
-      fixed = new Importer(optsBuilder.build()).addUsedImports(path, input);
+      var deadline =
+          params.timeoutMillis() != null
+              ? Deadline.after(Duration.ofMillis(params.timeoutMillis()))
+              : Deadline.none();
+      edits = new Importer(options(params)).findEdits(path, input, deadline);
     } catch (ImporterException e) {
       for (ImporterException.ImporterDiagnostic d : e.diagnostics()) {
         errWriter.println(d);
@@ -183,10 +203,19 @@ public final class CLI {
       return 1;
     }
 
-    if (!params.fixOnly()) {
-      fixed = googleFormat(fixed);
+    if (params.output() == CLIOptions.Output.EDITS) {
+      for (var edit : edits) {
+        outWriter.println(toJson(edit));
+      }
+
+      return 0;
+    }
+
+    if (params.fixOnly()) {
+      return writeEdits(params, path, input, edits);
     }
 
+    var fixed = googleFormat(params.format(), Edit.apply(input, edits));
     if (!params.replace()) {
       outWriter.write(fixed);
       return 0;
@@ -207,4 +236,117 @@ public final class CLI {
 
     return 0;
   }
+
+  private Options options(CLIOptions params) {
+    // TODO: make stdlib version a CLI option
+    var optsBuilder =
+        Options.builder()
+            .debug(params.verbose())
+            .stdlib(StdlibProviders.java8())
+            .useVirtualThreads(params.virtualThreads())
+            .speculativePrecision(params.speculative())
+            .cacheDirectory(Options.DEFAULT_CACHE_DIRECTORY);
+    if (params.numThreads() != null) {
+      optsBuilder.numThreads(params.numThreads());
+    } else {
+      optsBuilder.adaptiveThreads();
+    }
+
+    if (params.repository() != null) {
+      optsBuilder.repository(Paths.get(params.repository()));
+    }
+
+    if (params.verbose()) {
+      Logs.enable();
+    }
+
+    return optsBuilder.build();
+  }
+
+  private int index(CLIOptions params) throws UsageException {
+    var roots = new ArrayList<Path>();
+    params.paths().forEach(p -> roots.add(Paths.get(p).toAbsolutePath()));
+    if (params.repository() != null) {
+      roots.add(Paths.get(params.repository()).toAbsolutePath());
+    }
+
+    if (roots.isEmpty()) {
+      throw new UsageException("please provide jars or directories to index, or --repository");
+    }
+
+    try {
+      var result = new Indexer(options(params)).index(roots);
+      errWriter.println(
+          String.format(
+              "indexed %d jars (%d read) and %d poms (%d read)",
+              result.jars(), result.jarsRead(), result.poms(), result.pomsRead()));
+    } catch (IOException | UncheckedIOException e) {
+      errWriter.println("could not index " + roots + ": " + e.getMessage());
+      return 1;
+    }
+
+    return 0;
+  }
+
+  private static String toJson(Edit edit) {
+    var sb = new StringBuilder();
+    sb.append("{\"start\":").append(edit.start());
+    sb.append(",\"end\":").append(edit.end());
+    sb.append(",\"text\":\"");
+    for (var c : edit.text().toCharArray()) {
+      switch (c) {
+        case '"':
+          sb.append("\\\"");
+          break;
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        case '\r':
+          sb.append("\\r");
+          break;
+        case '\t':
+          sb.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            sb.append(String.format("\\u%04x", (int) c));
+          } else {
+            sb.append(c);
+          }
+      }
+    }
+
+    return sb.append("\"}").toString();
+  }
+
+  // Without formatting, the edits can be written directly without building the fixed file first
+  private int writeEdits(CLIOptions params, Path path, String input, List<Edit> edits) {
+    if (!params.replace()) {
+      try {
+        Edit.write(input, edits, outWriter);
+      } catch (IOException e) {
+        // PrintWriter never throws
+        throw new UncheckedIOException(e);
+      }
+
+      return 0;
+    }
+
+    if (edits.isEmpty()) {
+      // don't bother writing to file if nothing changed
+      return 0;
+    }
+
+    try (var writer = Files.newBufferedWriter(path, UTF_8)) {
+      Edit.write(input, edits, writer);
+    } catch (IOException e) {
+      errWriter.println(path + ": could not write file: " + e.getMessage());
+      return 1;
+    }
+
+    return 0;
+  }
 }
@@ -1,7 +1,34 @@
 package com.nikodoko.javaimports.cli;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /** Command line options */
 final class CLIOptions {
+  /** What to do */
+  enum Command {
+    // Fix the imports of a file
+    FIX,
+    // Index jars ahead of time
+    INDEX;
+  }
+
+  /** What to print */
+  enum Output {
+    // The fixed source file
+    SOURCE,
+    // The edits to make to the source file
+    EDITS;
+  }
+
+  /** What to format, when formatting */
+  enum Format {
+    // Only the import block, also removing unused imports
+    IMPORTS,
+    // The whole file
+    FILE;
+  }
+
   private final String file;
   private final boolean help;
   private final boolean version;
@@ -16,6 +43,15 @@ final class CLIOptions {
   private final Integer metricsDatadogPort;
   private final String metricsDatadogHost;
   private final boolean tracingEnabled;
+  private final Integer numThreads;
+  private final boolean virtualThreads;
+  private final boolean speculative;
+  private final Long timeoutMillis;
+  private final Output output;
+  private final Format format;
+  private final Command command;
+  // The jars and directories to index
+  private final List<String> paths;
 
   CLIOptions(
       String file,
@@ -29,7 +65,15 @@ final class CLIOptions {
       boolean metricsEnabled,
       Integer metricsDatadogPort,
       String metricsDatadogHost,
-      boolean tracingEnabled) {
+      boolean tracingEnabled,
+      Integer numThreads,
+      boolean virtualThreads,
+      boolean speculative,
+      Long timeoutMillis,
+      Output output,
+      Format format,
+      Command command,
+      List<String> paths) {
     this.file = file;
     this.help = help;
     this.version = version;
@@ -42,6 +86,14 @@ final class CLIOptions {
     this.metricsDatadogPort = metricsDatadogPort;
     this.metricsDatadogHost = metricsDatadogHost;
     this.tracingEnabled = tracingEnabled;
+    this.numThreads = numThreads;
+    this.virtualThreads = virtualThreads;
+    this.speculative = speculative;
+    this.timeoutMillis = timeoutMillis;
+    this.output = output;
+    this.format = format;
+    this.command = command;
+    this.paths = paths;
   }
 
   /** The file to operate on */
@@ -102,6 +154,46 @@ final class CLIOptions {
     return tracingEnabled;
   }
 
+  /** The number of threads to use for parallel tasks. */
+  Integer numThreads() {
+    return numThreads;
+  }
+
+  /** Whether to run I/O bound tasks on virtual threads. */
+  boolean virtualThreads() {
+    return virtualThreads;
+  }
+
+  /** Whether to start the work of the next precision level ahead of time. */
+  boolean speculative() {
+    return speculative;
+  }
+
+  /** How long to look for imports before giving up, if set. */
+  Long timeoutMillis() {
+    return timeoutMillis;
+  }
+
+  /** What to print. */
+  Output output() {
+    return output;
+  }
+
+  /** What to format, if not {@link #fixOnly()}. */
+  Format format() {
+    return format;
+  }
+
+  /** What to do. */
+  Command command() {
+    return command;
+  }
+
+  /** The jars and directories to index, when indexing. */
+  List<String> paths() {
+    return paths;
+  }
+
   static class Builder {
     private String file;
     private boolean help;
@@ -115,6 +207,14 @@ final class CLIOptions {
     private String metricsDatadogHost;
     private boolean tracingEnabled;
     private String repository;
+    private Integer numThreads;
+    private boolean virtualThreads;
+    private boolean speculative;
+    private Long timeoutMillis;
+    private Output output = Output.SOURCE;
+    private Format format = Format.IMPORTS;
+    private Command command = Command.FIX;
+    private List<String> paths = new ArrayList<>();
 
     Builder file(String file) {
       this.file = file;
@@ -176,6 +276,46 @@ final class CLIOptions {
       return this;
     }
 
+    Builder numThreads(int numThreads) {
+      this.numThreads = numThreads;
+      return this;
+    }
+
+    Builder virtualThreads(boolean virtualThreads) {
+      this.virtualThreads = virtualThreads;
+      return this;
+    }
+
+    Builder speculative(boolean speculative) {
+      this.speculative = speculative;
+      return this;
+    }
+
+    Builder timeoutMillis(Long timeoutMillis) {
+      this.timeoutMillis = timeoutMillis;
+      return this;
+    }
+
+    Builder output(Output output) {
+      this.output = output;
+      return this;
+    }
+
+    Builder format(Format format) {
+      this.format = format;
+      return this;
+    }
+
+    Builder command(Command command) {
+      this.command = command;
+      return this;
+    }
+
+    Builder path(String path) {
+      this.paths.add(path);
+      return this;
+    }
+
     CLIOptions build() {
       return new CLIOptions(
           file,
@@ -189,7 +329,15 @@ final class CLIOptions {
           metricsEnabled,
           metricsDatadogPort,
           metricsDatadogHost,
-          tracingEnabled);
+          tracingEnabled,
+          numThreads,
+          virtualThreads,
+          speculative,
+          timeoutMillis,
+          output,
+          format,
+          command,
+          List.copyOf(paths));
     }
   }
 
@@ -3,12 +3,15 @@ package com.nikodoko.javaimports.cli;
 import java.util.Iterator;
 
 public class CLIOptionsParser {
+  private static final String INDEX_COMMAND = "index";
+
   /** Holds a flag and its (optional) value. */
   private static class FlagAndValue {
     private static char SEPARATOR = '=';
 
     /** The flag, for example "--help" */
     public String flag;
+
     /** The value, optionally null */
     public String value;
 
@@ -40,8 +43,21 @@ public class CLIOptionsParser {
   public static CLIOptions parse(Iterable<String> args) throws IllegalArgumentException {
     CLIOptions.Builder optsBuilder = CLIOptions.builder();
     Iterator<String> it = args.iterator();
+    boolean indexing = false;
+    // Commands other than fixing a file come first
+    if (args.iterator().hasNext() && args.iterator().next().equals(INDEX_COMMAND)) {
+      it.next();
+      optsBuilder.command(CLIOptions.Command.INDEX);
+      indexing = true;
+    }
+
     while (it.hasNext()) {
       String option = it.next();
+      if (indexing && !option.startsWith("-")) {
+        optsBuilder.path(option);
+        continue;
+      }
+
       if (!option.startsWith("-") || option.equals("-")) {
         optsBuilder.file(option);
         break;
@@ -57,6 +73,10 @@ public class CLIOptionsParser {
         case "--fix-only":
           optsBuilder.fixOnly(true);
           break;
+        case "--format":
+        case "-format":
+          optsBuilder.format(parseFormat(fv.value));
+          break;
         case "--replace":
         case "-replace":
         case "-r":
@@ -78,7 +98,8 @@ public class CLIOptionsParser {
           break;
         case "--repository":
         case "-repository":
-          optsBuilder.repository(fv.value);
+          // Also accept the path as the next argument, as in --repository ~/.m2/repository
+          optsBuilder.repository(fv.value == null && it.hasNext() ? it.next() : fv.value);
           break;
         case "--metrics-enable":
         case "-metrics-enable":
@@ -92,6 +113,26 @@ public class CLIOptionsParser {
         case "-metrics-datadog-host":
           optsBuilder.metricsDatadogHost(fv.value);
           break;
+        case "--speculative":
+        case "-speculative":
+          optsBuilder.speculative(true);
+          break;
+        case "--threads":
+        case "-threads":
+          optsBuilder.numThreads(Integer.parseInt(fv.value));
+          break;
+        case "--timeout":
+        case "-timeout":
+          optsBuilder.timeoutMillis(Long.parseLong(fv.value));
+          break;
+        case "--virtual-threads":
+        case "-virtual-threads":
+          optsBuilder.virtualThreads(true);
+          break;
+        case "--output":
+        case "-output":
+          optsBuilder.output(parseOutput(fv.value));
+          break;
         case "--tracing-enable":
         case "-tracing-enable":
           optsBuilder.tracingEnabled(true);
@@ -108,4 +149,34 @@ public class CLIOptionsParser {
 
     return optsBuilder.build();
   }
+
+  private static CLIOptions.Format parseFormat(String value) {
+    if (value == null) {
+      throw new IllegalArgumentException("missing value for --format");
+    }
+
+    switch (value) {
+      case "imports":
+        return CLIOptions.Format.IMPORTS;
+      case "file":
+        return CLIOptions.Format.FILE;
+      default:
+        throw new IllegalArgumentException("unexpected format: " + value);
+    }
+  }
+
+  private static CLIOptions.Output parseOutput(String value) {
+    if (value == null) {
+      throw new IllegalArgumentException("missing value for --output");
+    }
+
+    switch (value) {
+      case "source":
+        return CLIOptions.Output.SOURCE;
+      case "edits":
+        return CLIOptions.Output.EDITS;
+      default:
+        throw new IllegalArgumentException("unexpected output: " + value);
+    }
+  }
 }
@@ -9,37 +9,62 @@ public class UsageException extends Exception {
   private static final String[] USAGE = {
     "",
     "Usage: javaimports [options] file",
+    "       javaimports index [options] [--repository dir] [jar-or-directory...]",
     "",
     "Options:",
     "  --assume-filename, -assume-filename",
     "    File name to use for diagnostics when importing standard input (default is .).",
     "  --fix-only",
     "    Do not format ouput, simply add and remove imports.",
+    "  --format, -format",
+    "    What to format when not using --fix-only: \"imports\" to remove unused imports and sort",
+    "    the import block (default), or \"file\" to also format the whole file.",
     "  --metrics-datadog-port, -metrics-datadog-port",
     "    Port to use when --metrics-enable is set (default is 8125).",
     "  --metrics-datadog-host, -metrics-datadog-host",
     "    Host to use when --metrics-enable is set (default is \"localhost\").",
     "  --metrics-enable, -metrics-enable",
     "    Enable metrics reporting to a datadog agent running on the specified port and host.",
+    "  --output, -output",
+    "    What to print: \"source\" for the fixed file (default), or \"edits\" for the changes to",
+    "    make to it, one JSON object per line with start and end offsets (in characters) and the",
+    "    text to replace them with. Edits are never formatted.",
     "  --replace, -replace, -r, -w",
     "    Write result to source file instead of stdout.",
     "  --repository, -repository",
     "    Absolute path to the directory containing dependency JARs (default is"
         + " /your/home/.m2/repository).",
+    "  --speculative, -speculative",
+    "    Load the dependencies needed by the next, more precise attempt at finding imports while",
+    "    the current one runs, using more CPU to return faster when it is needed.",
     "  --telemetry-enable, -telemetry-enable",
     "    Enable telemetry. Shorthand for --tracing-enable and --metrics-enable.",
+    "  --threads, -threads",
+    "    Number of threads to use when parsing and loading dependencies (default depends on the",
+    "    number of processors).",
+    "  --timeout, -timeout",
+    "    Time in milliseconds after which to stop looking for imports, and add the ones found so",
+    "    far.",
     "  --tracing-enable, -tracing-enable",
     "    Enable tracing reporting to a datadog agent listening at http://localhost:8126.",
     "  --verbose, -verbose, -v",
     "    Verbose logging.",
     "  --version, -version",
     "    Print the version.",
+    "  --virtual-threads, -virtual-threads",
+    "    Read dependencies and wait on external processes using virtual threads (when available),",
+    "    ignoring --threads for these tasks.",
     "  --help, -help, -h",
     "    Print this usage statement.",
     "",
     "File:",
     "  setting file equal to '-' will read from stdin",
     "",
+    "Index:",
+    "  index all the jars and POMs found in the given jars and directories (and in the repository",
+    "  if --repository is set), so that runs using them can look them up in indexes shared with",
+    "  other runs instead of reading them. Only what changed since the last index is read again.",
+    "",
   };
 
   public UsageException(String message) {
@@ -0,0 +1,86 @@
+package com.nikodoko.javaimports.common;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point after which the result of a task is no longer needed, either because it took too long or
+ * because it was cancelled.
+ *
+ * <p>Once it is reached, waiting on work through this deadline returns right away with whatever has
+ * completed so far, and the rest of the work is abandoned.
+ */
+public class Deadline {
+  private final CompletableFuture<Void> reached = new CompletableFuture<>();
+
+  private Deadline() {}
+
+  /** A deadline that is only reached if cancelled. */
+  public static Deadline none() {
+    return new Deadline();
+  }
+
+  /** A deadline that is reached after {@code timeout}, or earlier if cancelled. */
+  public static Deadline after(Duration timeout) {
+    var deadline = new Deadline();
+    CompletableFuture.runAsync(
+        deadline::cancel,
+        CompletableFuture.delayedExecutor(timeout.toNanos(), TimeUnit.NANOSECONDS));
+    return deadline;
+  }
+
+  /** Reaches this deadline now. */
+  public void cancel() {
+    reached.complete(null);
+  }
+
+  public boolean isReached() {
+    return reached.isDone();
+  }
+
+  /** Runs {@code action} when this deadline is reached, or right away if it already is. */
+  public void onReached(Runnable action) {
+    reached.thenRun(action);
+  }
+
+  /**
+   * Waits for {@code task} to complete, or for this deadline to be reached, in which case {@code
+   * task} is cancelled and nothing is returned.
+   */
+  public <T> Optional<T> await(CompletableFuture<T> task) {
+    return waitFor(task) ? Optional.ofNullable(task.join()) : Optional.empty();
+  }
+
+  /**
+   * Waits for all {@code tasks} to complete, or for this deadline to be reached, in which case
+   * tasks that did not complete are cancelled and only the results of the others are returned.
+   */
+  public <T> List<T> awaitAll(List<CompletableFuture<T>> tasks) {
+    waitFor(CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)));
+    var results = new ArrayList<T>();
+    for (var task : tasks) {
+      if (task.isDone()) {
+        results.add(task.join());
+      } else {
+        task.cancel(false);
+      }
+    }
+
+    return results;
+  }
+
+  // Returns whether task completed before this deadline was reached, cancelling it otherwise
+  private boolean waitFor(CompletableFuture<?> task) {
+    CompletableFuture.anyOf(task, reached).join();
+    if (task.isDone()) {
+      return true;
+    }
+
+    task.cancel(false);
+    return false;
+  }
+}
@@ -0,0 +1,111 @@
+package com.nikodoko.javaimports.common;
+
+import com.nikodoko.javaimports.common.telemetry.Logs;
+import com.nikodoko.javaimports.common.telemetry.Metrics;
+import com.nikodoko.javaimports.common.telemetry.Tag;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A named {@link Executor} that keeps track of how busy it is, so that its sizing can be checked
+ * using metrics.
+ */
+public class InstrumentedExecutor implements Executor {
+  private static final Logger log = Logs.getLogger(InstrumentedExecutor.class.getName());
+  private static final Tag.Key<String> EXECUTOR = Tag.withKey("executor");
+
+  private final String name;
+  private final Executor delegate;
+  // The number of threads available to run tasks, or 0 if unbounded
+  private final int threads;
+  private final long createdAt = System.nanoTime();
+  private final AtomicInteger queued = new AtomicInteger();
+  private final AtomicInteger maxQueued = new AtomicInteger();
+  private final AtomicLong tasks = new AtomicLong();
+  private final AtomicLong busyNanos = new AtomicLong();
+
+  private InstrumentedExecutor(String name, Executor delegate, int threads) {
+    this.name = name;
+    this.delegate = delegate;
+    this.threads = threads;
+  }
+
+  /** An executor running tasks on {@code threads} threads, or on the calling thread if 0. */
+  public static InstrumentedExecutor fixed(String name, int threads) {
+    if (threads == 0) {
+      return new InstrumentedExecutor(name, Runnable::run, 1);
+    }
+
+    return new InstrumentedExecutor(
+        name, Executors.newFixedThreadPool(threads, threadFactory(name)), threads);
+  }
+
+  /** An executor starting new threads as needed, for tasks that spend their time blocked. */
+  public static InstrumentedExecutor unbounded(String name) {
+    return new InstrumentedExecutor(name, Executors.newCachedThreadPool(threadFactory(name)), 0);
+  }
+
+  /**
+   * An executor running each task on its own virtual thread, or on an unbounded thread pool if
+   * virtual threads are not available.
+   */
+  public static InstrumentedExecutor virtual(String name) {
+    // Virtual threads only exist from Java 21 onwards, but we still support running on Java 17
+    try {
+      var executor =
+          (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      return new InstrumentedExecutor(name, executor, 0);
+    } catch (ReflectiveOperationException e) {
+      return unbounded(name);
+    }
+  }
+
+  private static ThreadFactory threadFactory(String name) {
+    var count = new AtomicInteger();
+    return r -> {
+      var thread = new Thread(r, String.format("javaimports-%s-%d", name, count.incrementAndGet()));
+      // Do not prevent the JVM from exiting when the Importer is used as a library
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  @Override
+  public void execute(Runnable task) {
+    maxQueued.accumulateAndGet(queued.incrementAndGet(), Math::max);
+    delegate.execute(
+        () -> {
+          queued.decrementAndGet();
+          var start = System.nanoTime();
+          try {
+            task.run();
+          } finally {
+            busyNanos.addAndGet(System.nanoTime() - start);
+            tasks.incrementAndGet();
+          }
+        });
+  }
+
+  /**
+   * Reports how many tasks ran, how many were waiting for a thread at most, and (if bounded) which
+   * share of the available thread time was spent running tasks since this executor was created.
+   */
+  public void reportMetrics() {
+    var tag = EXECUTOR.is(name);
+    Metrics.gauge("executor.tasks", tasks.get(), tag);
+    Metrics.gauge("executor.queue_depth.max", maxQueued.get(), tag);
+    var stats = String.format("%d tasks, max queue depth %d", tasks.get(), maxQueued.get());
+    if (threads > 0) {
+      var utilization = (double) busyNanos.get() / ((System.nanoTime() - createdAt) * threads);
+      Metrics.gauge("executor.utilization", utilization, tag);
+      stats += String.format(", utilization %.2f on %d threads", utilization, threads);
+    }
+
+    log.log(Level.INFO, String.format("executor %s: %s", name, stats));
+  }
+}
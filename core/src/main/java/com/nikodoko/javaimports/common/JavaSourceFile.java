@@ -1,9 +1,16 @@
 package com.nikodoko.javaimports.common;
 
+import java.util.Collection;
+import java.util.Optional;
 import java.util.Set;
 
 public interface JavaSourceFile extends ImportProvider, ClassProvider {
   Selector pkg();
 
   Set<Identifier> topLevelDeclarations();
+
+  /** The imports declared at the top of this file, if it has been parsed already. */
+  default Optional<Collection<Import>> declaredImports() {
+    return Optional.empty();
+  }
 }
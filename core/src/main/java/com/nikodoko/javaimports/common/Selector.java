@@ -1,7 +1,5 @@
 package com.nikodoko.javaimports.common;
 
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -31,32 +29,28 @@ public final class Selector {
    * of 6.
    */
   public static final class Distance {
-    private final Path reference;
+    private final Identifier[] reference;
 
-    private Distance(Path reference) {
+    private Distance(Identifier[] reference) {
       this.reference = reference;
     }
 
     public static Distance from(Selector s) {
-      return new Distance(asPath(s));
-    }
-
-    private static Path asPath(Selector s) {
-      var referencePath =
-          s.identifiers.stream().map(Identifier::toString).collect(Collectors.joining("/"));
-      return Paths.get(referencePath);
+      return new Distance(s.identifiers.toArray(Identifier[]::new));
     }
 
     public int to(Selector s) {
-      return distance(reference, asPath(s));
-    }
-
-    private int distance(Path from, Path to) {
-      if (from.equals(to)) {
-        return 0;
+      // The relative path goes up to the longest common prefix, then down to s
+      var common = 0;
+      for (var identifier : s.identifiers) {
+        if (common == reference.length || !reference[common].equals(identifier)) {
+          break;
+        }
+
+        common++;
       }
 
-      return from.relativize(to).getNameCount();
+      return (reference.length - common) + (s.size() - common);
     }
   }
 
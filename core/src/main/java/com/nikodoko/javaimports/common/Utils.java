@@ -1,8 +1,12 @@
 package com.nikodoko.javaimports.common;
 
 import com.google.common.base.MoreObjects;
+import java.io.IOException;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.List;
@@ -54,4 +58,22 @@ public class Utils {
       throw new RuntimeException(e);
     }
   }
+
+  /**
+   * Writes {@code content} to {@code file}, creating its directory if needed. The content goes to a
+   * temporary file first, which is then moved over {@code file}: concurrent runs see either the
+   * previous content or the new one, never a partially written file, and those that mapped the
+   * previous file keep reading it.
+   */
+  public static void writeAtomically(Path file, byte[] content) throws IOException {
+    var directory = file.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    var tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+    try {
+      Files.write(tmp, content);
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
 }
@@ -12,5 +12,19 @@ import java.util.List;
 public interface Environment extends ImportProvider, ClassProvider {
   List<? extends JavaSourceFile> siblings();
 
+  /** All the source files of the project that this environment knows of so far. */
+  default List<? extends JavaSourceFile> files() {
+    return List.of();
+  }
+
   boolean increasePrecision();
+
+  /**
+   * Starts the work needed by the next {@link #increasePrecision()} in the background, without
+   * changing what this environment provides until then.
+   */
+  default void prefetchNextPrecision() {}
+
+  /** Abandons the work started by {@link #prefetchNextPrecision()} that was not needed. */
+  default void cancelPrefetch() {}
 }
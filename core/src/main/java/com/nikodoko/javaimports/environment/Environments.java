@@ -2,6 +2,7 @@ package com.nikodoko.javaimports.environment;
 
 import com.nikodoko.javaimports.Options;
 import com.nikodoko.javaimports.common.ClassEntity;
+import com.nikodoko.javaimports.common.Deadline;
 import com.nikodoko.javaimports.common.Identifier;
 import com.nikodoko.javaimports.common.Import;
 import com.nikodoko.javaimports.common.JavaSourceFile;
@@ -43,17 +44,23 @@ public class Environments {
   }
 
   public static Environment autoSelect(Path filename, Selector pkg, Options options) {
+    return autoSelect(filename, pkg, options, Deadline.none());
+  }
+
+  /** Selects the environment of {@code filename}, which will stop loading at {@code deadline}. */
+  public static Environment autoSelect(
+      Path filename, Selector pkg, Options options, Deadline deadline) {
     Path current = filename.getParent();
     while (current != null) {
       Path potentialBuild = Paths.get(current.toString(), "BUILD");
       Path potentialBuildBazel = Paths.get(current.toString(), "BUILD.bazel");
       if (Files.exists(potentialBuild) || Files.exists(potentialBuildBazel)) {
-        return initBazelEnvironment(current, filename, pkg, options);
+        return initBazelEnvironment(current, filename, pkg, options, deadline);
       }
 
       Path potentialPom = Paths.get(current.toString(), "pom.xml");
       if (Files.exists(potentialPom)) {
-        return new MavenEnvironment(current, filename, pkg, options);
+        return new MavenEnvironment(current, filename, pkg, options, deadline);
       }
 
       current = current.getParent();
@@ -63,7 +70,7 @@ public class Environments {
   }
 
   private static Environment initBazelEnvironment(
-      Path targetRoot, Path filename, Selector pkg, Options options) {
+      Path targetRoot, Path filename, Selector pkg, Options options, Deadline deadline) {
     // Iterate further to find the workspace root | module root
     Path current = targetRoot;
     while (current != null) {
@@ -72,11 +79,11 @@ public class Environments {
       Path potentialModule = Paths.get(current.toString(), "MODULE");
       Path potentialModuleBazel = Paths.get(current.toString(), "MODULE.bazel");
       if (Files.exists(potentialWorkspace) | Files.exists(potentialWorkspaceBazel)) {
-        return new BazelEnvironment(current, targetRoot, false, filename, pkg, options);
+        return new BazelEnvironment(current, targetRoot, false, filename, pkg, options, deadline);
       }
 
       if (Files.exists(potentialModule) | Files.exists(potentialModuleBazel)) {
-        return new BazelEnvironment(current, targetRoot, true, filename, pkg, options);
+        return new BazelEnvironment(current, targetRoot, true, filename, pkg, options, deadline);
       }
 
       current = current.getParent();
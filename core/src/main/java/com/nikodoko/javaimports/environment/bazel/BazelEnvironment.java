@@ -3,6 +3,7 @@ package com.nikodoko.javaimports.environment.bazel;
 import com.google.common.collect.Iterables;
 import com.nikodoko.javaimports.Options;
 import com.nikodoko.javaimports.common.ClassEntity;
+import com.nikodoko.javaimports.common.Deadline;
 import com.nikodoko.javaimports.common.Identifier;
 import com.nikodoko.javaimports.common.Import;
 import com.nikodoko.javaimports.common.JavaSourceFile;
@@ -11,10 +12,11 @@ import com.nikodoko.javaimports.common.Utils;
 import com.nikodoko.javaimports.common.telemetry.Logs;
 import com.nikodoko.javaimports.common.telemetry.Traces;
 import com.nikodoko.javaimports.environment.Environment;
-import com.nikodoko.javaimports.environment.maven.MavenDependencyLoader;
 import com.nikodoko.javaimports.environment.shared.Dependency;
+import com.nikodoko.javaimports.environment.shared.LazyJar;
 import com.nikodoko.javaimports.environment.shared.LazyJars;
 import com.nikodoko.javaimports.environment.shared.LazyJavaProject;
+import com.nikodoko.javaimports.environment.shared.SymbolTable;
 import io.opentracing.Span;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -23,6 +25,7 @@ import java.nio.file.Paths;
 import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -33,6 +36,10 @@ import java.util.stream.Collectors;
 
 public class BazelEnvironment implements Environment {
   private static final Clock clock = Clock.systemDefaultZone();
+  private static final String QUERY_CACHE_DIRECTORY = "bazel";
+  // Refreshes of stale query caches that were started in the background and are still running
+  private static final List<CompletableFuture<Void>> refreshes =
+      Collections.synchronizedList(new ArrayList<>());
   private static Logger log = Logs.getLogger(BazelEnvironment.class.getName());
   private static final Path BAZEL_OUTPUT_USER_ROOT =
       Paths.get(System.getProperty("user.home"), ".javaimports");
@@ -43,15 +50,20 @@ public class BazelEnvironment implements Environment {
   private final Path fileBeingResolved;
   private final Selector pkgBeingResolved;
   private final Options options;
+  private final Deadline deadline;
   private final boolean isModule;
+  private final Optional<BazelQueryCache> queryCache;
 
   // TODO: this should be set after we do the initial bazel query
   private Precision precision = Precision.MINIMAL;
 
-  private BazelQueryResults cache = null;
+  // The bazel query is slow, so we start it as soon as possible and only wait for it when needed
+  private final CompletableFuture<BazelQueryResults> cache;
   private LazyJavaProject project = null;
   private Map<Identifier, List<Import>> availableImports = null;
   private LazyJars jars = null;
+  // Work started ahead of time for the next precision level
+  private final List<CompletableFuture<Void>> prefetches = new ArrayList<>();
 
   // TMP
   private static final Path BAZEL_REPOSITORY_CACHE =
@@ -75,13 +87,48 @@ public class BazelEnvironment implements Environment {
       Path fileBeingResolved,
       Selector pkgBeingResolved,
       Options options) {
+    this(
+        workspaceRoot,
+        targetRoot,
+        isModule,
+        fileBeingResolved,
+        pkgBeingResolved,
+        options,
+        Deadline.none());
+  }
+
+  /**
+   * Once {@code deadline} is reached, the bazel query is stopped and dependencies and project files
+   * that are not loaded yet are ignored.
+   */
+  public BazelEnvironment(
+      Path workspaceRoot,
+      Path targetRoot,
+      boolean isModule,
+      Path fileBeingResolved,
+      Selector pkgBeingResolved,
+      Options options,
+      Deadline deadline) {
     this.outputBase = outputBase(workspaceRoot);
     this.workspaceRoot = workspaceRoot;
     this.targetRoot = targetRoot;
     this.isModule = isModule;
     this.fileBeingResolved = fileBeingResolved;
     this.options = options;
+    this.deadline = deadline;
     this.pkgBeingResolved = pkgBeingResolved;
+    this.queryCache =
+        options
+            .cacheDirectory()
+            .map(
+                d ->
+                    new BazelQueryCache(
+                        d.resolve(QUERY_CACHE_DIRECTORY),
+                        workspaceRoot,
+                        targetRoot,
+                        query(),
+                        isModule));
+    this.cache = startQuery();
   }
 
   private Path outputBase(Path workspaceRoot) {
@@ -99,7 +146,8 @@ public class BazelEnvironment implements Environment {
     return outputBase;
   }
 
-  private LazyJars jars() {
+  // Synchronized as prefetching can initialize it in the background
+  private synchronized LazyJars jars() {
     if (jars == null) {
       var span = Traces.createSpan("BazelEnvironment.initJars");
       try (var __ = Traces.activate(span)) {
@@ -114,10 +162,12 @@ public class BazelEnvironment implements Environment {
 
   private LazyJars initJars() {
     long start = clock.millis();
-    return new LazyJars(options.executor(), cache().deps());
+    var symbols = options.cacheDirectory().flatMap(d -> SymbolTable.open(SymbolTable.location(d)));
+    return new LazyJars(options.archiveExecutor(), cache().deps(), deadline, symbols);
   }
 
-  private LazyJavaProject project() {
+  // Synchronized as prefetching can initialize it in the background
+  private synchronized LazyJavaProject project() {
     if (project == null) {
       var span = Traces.createSpan("BazelEnvironment.initProject");
       try (var __ = Traces.activate(span)) {
@@ -141,23 +191,55 @@ public class BazelEnvironment implements Environment {
     return project;
   }
 
+  private CompletableFuture<BazelQueryResults> startQuery() {
+    var span = Traces.createSpan("BazelEnvironment.initCache");
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try (var __ = Traces.activate(span)) {
+            return initCache();
+          } finally {
+            span.finish();
+          }
+        },
+        options.processExecutor());
+  }
+
   private BazelQueryResults cache() {
-    if (cache == null) {
-      var span = Traces.createSpan("BazelEnvironment.initCache");
-      try (var __ = Traces.activate(span)) {
-        cache = initCache();
-      } finally {
-        span.finish();
-      }
+    var span = Traces.createSpan("BazelEnvironment.awaitCache");
+    try (var __ = Traces.activate(span)) {
+      return deadline.await(cache).orElse(new BazelQueryResults(List.of(), List.of()));
+    } finally {
+      span.finish();
     }
-
-    return cache;
   }
 
   private BazelQueryResults initCache() {
     var start = clock.millis();
     try {
-      return bazelQuery();
+      var cached = queryCache.flatMap(BazelQueryCache::read);
+      if (cached.isPresent() && !cached.get().isStale()) {
+        log.info("using cached bazel query results");
+        return cached.get().results();
+      }
+
+      // Reading BUILD files is cheap, and gives up-to-date results when it works
+      var resolved =
+          BuildFileResolver.resolve(
+              workspaceRoot, outputBase, isModule, targetRoot, fileBeingResolved);
+      if (resolved.isPresent()) {
+        log.info("resolved dependencies from BUILD files");
+        return resolved.get();
+      }
+
+      if (cached.isEmpty()) {
+        return bazelQuery(deadline);
+      }
+
+      // Stale results are still a very good approximation (BUILD files rarely change in ways that
+      // matter to us), so use them right away and refresh them for the next run
+      log.info("using stale bazel query results");
+      refreshInBackground();
+      return cached.get().results();
     } catch (Exception e) {
       log.log(Level.WARNING, "init error", e);
       return new BazelQueryResults(List.of(), List.of());
@@ -184,20 +266,19 @@ public class BazelEnvironment implements Environment {
     var tasks =
         cache().deps().stream()
             .map(BazelDependency::path)
-            .map(d -> CompletableFuture.supplyAsync(() -> loadImports(span, d), options.executor()))
+            .map(
+                d ->
+                    CompletableFuture.supplyAsync(
+                        () -> loadImports(span, d), options.archiveExecutor()))
             .toList();
-    return Utils.sequence(tasks)
-        .thenApply(
-            results ->
-                results.stream()
-                    .flatMap(List::stream)
-                    .collect(Collectors.groupingBy(i -> i.selector.identifier())))
-        .join();
+    return deadline.awaitAll(tasks).stream()
+        .flatMap(List::stream)
+        .collect(Collectors.groupingBy(i -> i.selector.identifier()));
   }
 
   private List<Import> loadImports(Span span, Path dep) {
     try (var __ = Traces.activate(span)) {
-      return MavenDependencyLoader.load(dep);
+      return List.copyOf(new LazyJar(dep).findAllImports());
     } catch (Exception e) {
       // throw new RuntimeException(e);
       log.log(Level.WARNING, String.format("could not load dependency %s", dep), e);
@@ -205,12 +286,42 @@ public class BazelEnvironment implements Environment {
     }
   }
 
+  private void refreshInBackground() {
+    var refresh =
+        CompletableFuture.runAsync(
+            () -> {
+              try {
+                // This is for the next runs, so it does not share this run's deadline
+                bazelQuery(Deadline.none());
+              } catch (Exception e) {
+                log.log(Level.WARNING, "could not refresh bazel query cache", e);
+              }
+            },
+            options.processExecutor());
+    refreshes.add(refresh);
+    // Only pending refreshes are kept, so that they do not pile up when used as a library. Removing
+    // it after adding it ensures it is removed even if it is already done.
+    refresh.whenComplete((__, t) -> refreshes.remove(refresh));
+  }
+
+  /**
+   * Blocks until all the query cache refreshes started in the background are done, so that they are
+   * not lost when exiting.
+   */
+  public static void awaitPendingRefreshes() {
+    CompletableFuture.allOf(refreshes.toArray(CompletableFuture[]::new)).join();
+  }
+
   private static final String DEPS_FORMAT = "deps(attr('srcs', //%s:%s, //%s:*))";
 
-  private BazelQueryResults bazelQuery() throws InterruptedException, IOException {
+  private String query() {
     var pkgPath = workspaceRoot.relativize(targetRoot);
     var filePath = targetRoot.relativize(fileBeingResolved);
-    var deps = String.format(DEPS_FORMAT, pkgPath, filePath, pkgPath);
+    return String.format(DEPS_FORMAT, pkgPath, filePath, pkgPath);
+  }
+
+  private BazelQueryResults bazelQuery(Deadline deadline) throws InterruptedException, IOException {
+    var deps = query();
     log.log(
         Level.INFO,
         "running bazel query in for %s in %s (output_base %s)"
@@ -235,9 +346,10 @@ public class BazelEnvironment implements Environment {
             .redirectError(stderrRedirect)
             .directory(workspaceRoot.toFile())
             .start();
+    deadline.onReached(proc::destroy);
 
     options
-        .executor()
+        .processExecutor()
         .execute(
             () -> {
               var reader = proc.errorReader();
@@ -259,16 +371,31 @@ public class BazelEnvironment implements Environment {
     var exitCode = proc.waitFor();
     if (exitCode != 0) {
       log.log(Level.WARNING, "bazel query error (code %d)".formatted(exitCode));
+    } else {
+      queryCache.ifPresent(c -> save(c, results));
     }
 
     return results;
   }
 
+  private static void save(BazelQueryCache cache, BazelQueryResults results) {
+    try {
+      cache.write(results);
+    } catch (IOException e) {
+      log.log(Level.WARNING, "could not write bazel query cache", e);
+    }
+  }
+
   @Override
   public List<? extends JavaSourceFile> siblings() {
     return project().filesInPackage(pkgBeingResolved);
   }
 
+  @Override
+  public List<? extends JavaSourceFile> files() {
+    return project().allFiles();
+  }
+
   enum Precision {
     // We have:
     // - Imports:
@@ -297,6 +424,10 @@ public class BazelEnvironment implements Environment {
 
   @Override
   public boolean increasePrecision() {
+    if (deadline.isReached()) {
+      return false;
+    }
+
     if (precision == Precision.MINIMAL) {
       jars().load(Dependency.Kind.DIRECT);
       precision = Precision.ALL_DIRECT_JARS;
@@ -304,7 +435,7 @@ public class BazelEnvironment implements Environment {
     }
 
     if (precision == Precision.ALL_DIRECT_JARS) {
-      project().eagerlyParse(options.executor());
+      project().eagerlyParse(options.parsingExecutor(), deadline);
       precision = Precision.ALL_DIRECT_DEPS;
       return true;
     }
@@ -317,7 +448,7 @@ public class BazelEnvironment implements Environment {
     }
 
     if (precision == Precision.ALL_JARS) {
-      project().eagerlyParse(options.executor());
+      project().eagerlyParse(options.parsingExecutor(), deadline);
       precision = Precision.MAXIMAL;
       return true;
     }
@@ -325,6 +456,44 @@ public class BazelEnvironment implements Environment {
     return false;
   }
 
+  @Override
+  public void prefetchNextPrecision() {
+    switch (precision) {
+      case MINIMAL:
+        // Do not block on the bazel query here, the point is to overlap it with trying to fix
+        prefetch(() -> jars().prefetch(Dependency.Kind.DIRECT));
+        break;
+      case ALL_DIRECT_JARS:
+        prefetch(() -> project().prefetch(options.parsingExecutor()));
+        break;
+      case ALL_DIRECT_DEPS:
+        prefetch(() -> jars().prefetch(Dependency.Kind.TRANSITIVE));
+        break;
+      default:
+        // Transitive source files only become available with the next precision level
+        break;
+    }
+  }
+
+  private void prefetch(Runnable action) {
+    prefetches.add(cache.thenRunAsync(action, options.processExecutor()));
+  }
+
+  @Override
+  public void cancelPrefetch() {
+    prefetches.forEach(p -> p.cancel(false));
+    prefetches.clear();
+    synchronized (this) {
+      if (jars != null) {
+        jars.cancelPrefetch();
+      }
+
+      if (project != null) {
+        project.cancelPrefetch();
+      }
+    }
+  }
+
   @Override
   public Collection<Import> findImports(Identifier i) {
     var found = new ArrayList<Import>();
@@ -0,0 +1,195 @@
+package com.nikodoko.javaimports.environment.bazel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.nikodoko.javaimports.common.Utils;
+import com.nikodoko.javaimports.common.telemetry.Logs;
+import com.nikodoko.javaimports.environment.shared.Dependency;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An on-disk cache of {@link BazelQueryResults}.
+ *
+ * <p>Running {@code bazel query} takes seconds even with a warm output base, but its results only
+ * change when the BUILD files of the packages in the closure or the external dependencies of the
+ * workspace do. Each entry therefore records a fingerprint of these files, which tells whether it
+ * is stale.
+ */
+class BazelQueryCache {
+  private static final Logger log = Logs.getLogger(BazelQueryCache.class.getName());
+  private static final int FORMAT_VERSION = 1;
+  private static final String EXTENSION = ".query";
+  private static final List<String> BUILD_FILES = List.of("BUILD", "BUILD.bazel");
+  // Files describing the external dependencies of a workspace
+  private static final List<String> WORKSPACE_FILES =
+      List.of(
+          "WORKSPACE",
+          "WORKSPACE.bazel",
+          "MODULE.bazel",
+          "MODULE.bazel.lock",
+          "maven_install.json");
+
+  record Entry(BazelQueryResults results, boolean isStale) {}
+
+  private final Path file;
+  private final Path workspaceRoot;
+  private final Path targetRoot;
+
+  BazelQueryCache(
+      Path directory, Path workspaceRoot, Path targetRoot, String query, boolean isModule) {
+    this.file =
+        directory.resolve(
+            Utils.md5(String.join("\n", workspaceRoot.toString(), query, String.valueOf(isModule)))
+                + EXTENSION);
+    this.workspaceRoot = workspaceRoot;
+    this.targetRoot = targetRoot;
+  }
+
+  Optional<Entry> read() {
+    try (var in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) {
+      if (in.readInt() != FORMAT_VERSION) {
+        return Optional.empty();
+      }
+
+      var fingerprint = in.readUTF();
+      var inputs = readPaths(in);
+      var srcs = readDependencies(in);
+      var deps = readDependencies(in);
+      var isStale = !fingerprint.equals(fingerprint(inputs));
+      return Optional.of(new Entry(new BazelQueryResults(srcs, deps), isStale));
+    } catch (NoSuchFileException e) {
+      return Optional.empty();
+    } catch (Exception e) {
+      log.log(Level.WARNING, "ignoring unreadable query cache " + file, e);
+      return Optional.empty();
+    }
+  }
+
+  /** Writes {@code results} to this cache. */
+  void write(BazelQueryResults results) throws IOException {
+    var inputs = inputs(results);
+    var bytes = new ByteArrayOutputStream();
+    try (var out = new DataOutputStream(bytes)) {
+      out.writeInt(FORMAT_VERSION);
+      out.writeUTF(fingerprint(inputs));
+      writePaths(out, inputs);
+      writeDependencies(out, results.srcs());
+      writeDependencies(out, results.deps());
+    }
+
+    Utils.writeAtomically(file, bytes.toByteArray());
+  }
+
+  // The files that, if modified, could change the results: the workspace files, the BUILD file of
+  // the target and the BUILD files of all the packages providing sources.
+  private List<Path> inputs(BazelQueryResults results) {
+    var inputs = new LinkedHashSet<Path>();
+    for (var name : WORKSPACE_FILES) {
+      inputs.add(workspaceRoot.resolve(name));
+    }
+
+    var buildFiles = new HashMap<Path, Optional<Path>>();
+    buildFile(buildFiles, targetRoot).ifPresent(inputs::add);
+    for (var src : results.srcs()) {
+      buildFile(buildFiles, src.path().getParent()).ifPresent(inputs::add);
+    }
+
+    return new ArrayList<>(inputs);
+  }
+
+  // Finds the BUILD file of the package containing directory, memoizing the results as many
+  // sources usually share the same package
+  private Optional<Path> buildFile(Map<Path, Optional<Path>> memo, Path directory) {
+    if (directory == null || !directory.startsWith(workspaceRoot)) {
+      return Optional.empty();
+    }
+
+    var found = memo.get(directory);
+    if (found != null) {
+      return found;
+    }
+
+    found = Optional.empty();
+    for (var name : BUILD_FILES) {
+      if (Files.exists(directory.resolve(name))) {
+        found = Optional.of(directory.resolve(name));
+        break;
+      }
+    }
+
+    if (found.isEmpty()) {
+      found = buildFile(memo, directory.getParent());
+    }
+
+    memo.put(directory, found);
+    return found;
+  }
+
+  static String fingerprint(List<Path> inputs) {
+    var sb = new StringBuilder();
+    for (var input : inputs) {
+      sb.append(input).append('\n');
+      try {
+        sb.append(new String(Files.readAllBytes(input), UTF_8));
+      } catch (IOException e) {
+        // A missing file is a valid state, that should be different from an empty file
+        sb.append('\0');
+      }
+      sb.append('\n');
+    }
+
+    return Utils.md5(sb.toString());
+  }
+
+  private static List<Path> readPaths(DataInputStream in) throws IOException {
+    var count = in.readInt();
+    var paths = new ArrayList<Path>(count);
+    for (var i = 0; i < count; i++) {
+      paths.add(Path.of(in.readUTF()));
+    }
+
+    return paths;
+  }
+
+  private static void writePaths(DataOutputStream out, List<Path> paths) throws IOException {
+    out.writeInt(paths.size());
+    for (var path : paths) {
+      out.writeUTF(path.toString());
+    }
+  }
+
+  private static List<BazelDependency> readDependencies(DataInputStream in) throws IOException {
+    var count = in.readInt();
+    var dependencies = new ArrayList<BazelDependency>(count);
+    for (var i = 0; i < count; i++) {
+      var kind = Dependency.Kind.values()[in.readByte()];
+      dependencies.add(new BazelDependency(kind, Path.of(in.readUTF())));
+    }
+
+    return dependencies;
+  }
+
+  private static void writeDependencies(DataOutputStream out, List<BazelDependency> dependencies)
+      throws IOException {
+    out.writeInt(dependencies.size());
+    for (var dependency : dependencies) {
+      out.writeByte(dependency.kind().ordinal());
+      out.writeUTF(dependency.path().toString());
+    }
+  }
+}
@@ -18,6 +18,14 @@ record BazelQueryResults(List<BazelDependency> srcs, List<BazelDependency> deps)
     return new Parser();
   }
 
+  /**
+   * Returns the location of a jar given its label (as it would appear in the query results), or
+   * {@code null} if it is not a jar label.
+   */
+  static Path jar(Path outputBase, boolean isModule, String label) {
+    return DependencyPatterns.tryMatch(outputBase.resolve("external"), isModule, label);
+  }
+
   static class Parser {
     private Boolean isModule;
     private Path workspaceRoot;
@@ -0,0 +1,343 @@
+package com.nikodoko.javaimports.environment.bazel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A minimal reader for BUILD files, that only understands the subset of Starlark used to declare
+ * simple rules: top-level calls whose attributes are strings, lists of strings and {@code glob()}.
+ *
+ * <p>Anything else (variables, {@code select()}, macros...) is reported as not understood instead
+ * of being guessed, so that callers can fall back to running bazel.
+ */
+class BuildFile {
+  static final List<String> NAMES = List.of("BUILD.bazel", "BUILD");
+
+  record Glob(List<String> include, List<String> exclude) {}
+
+  /** The value of an attribute: a list of strings (labels or file names), and globs. */
+  record Attribute(List<String> values, List<Glob> globs) {
+    static final Attribute EMPTY = new Attribute(List.of(), List.of());
+
+    Attribute plus(Attribute other) {
+      var values = new ArrayList<>(this.values);
+      values.addAll(other.values);
+      var globs = new ArrayList<>(this.globs);
+      globs.addAll(other.globs);
+      return new Attribute(values, globs);
+    }
+  }
+
+  record Rule(String kind, Map<String, Optional<Attribute>> attributes) {
+    /** Returns the name of this rule, if it is a plain string. */
+    Optional<String> name() {
+      return attribute("name")
+          .filter(a -> a.values().size() == 1 && a.globs().isEmpty())
+          .map(a -> a.values().get(0));
+    }
+
+    /**
+     * Returns the value of an attribute, or an empty value if it is not set. If it cannot be
+     * understood, returns {@code Optional.empty()}.
+     */
+    Optional<Attribute> attribute(String name) {
+      return attributes.getOrDefault(name, Optional.of(Attribute.EMPTY));
+    }
+  }
+
+  final List<Rule> rules;
+  // Whether some statements could not be understood, in which case rules might be missing
+  final boolean isComplete;
+
+  private BuildFile(List<Rule> rules, boolean isComplete) {
+    this.rules = rules;
+    this.isComplete = isComplete;
+  }
+
+  /** Reads the BUILD file of the package at {@code directory}, if any. */
+  static Optional<BuildFile> read(Path directory) throws IOException {
+    for (var name : NAMES) {
+      var file = directory.resolve(name);
+      if (Files.exists(file)) {
+        return Optional.of(parse(new String(Files.readAllBytes(file), UTF_8)));
+      }
+    }
+
+    return Optional.empty();
+  }
+
+  static BuildFile parse(String content) {
+    return new Parser(new Lexer(content).tokenize()).parse();
+  }
+
+  private enum TokenType {
+    STRING,
+    IDENTIFIER,
+    NUMBER,
+    PUNCTUATION,
+    // Only emitted outside of brackets, where it terminates a statement
+    NEWLINE,
+    EOF;
+  }
+
+  private record Token(TokenType type, String text) {
+    boolean is(String punctuation) {
+      return type == TokenType.PUNCTUATION && text.equals(punctuation);
+    }
+  }
+
+  private static class Lexer {
+    private final String content;
+    private final List<Token> tokens = new ArrayList<>();
+    private int pos = 0;
+    private int depth = 0;
+
+    Lexer(String content) {
+      this.content = content;
+    }
+
+    List<Token> tokenize() {
+      while (pos < content.length()) {
+        var c = content.charAt(pos);
+        if (c == '#') {
+          while (pos < content.length() && content.charAt(pos) != '\n') {
+            pos++;
+          }
+        } else if (c == '\n') {
+          if (depth == 0) {
+            tokens.add(new Token(TokenType.NEWLINE, "\n"));
+          }
+          pos++;
+        } else if (c == '\\' || Character.isWhitespace(c)) {
+          pos++;
+        } else if (c == '"' || c == '\'') {
+          tokens.add(new Token(TokenType.STRING, string()));
+        } else if ((c == 'r' || c == 'b') && isQuote(pos + 1)) {
+          // We do not care about raw or bytes strings being slightly different
+          pos++;
+        } else if (Character.isLetter(c) || c == '_') {
+          tokens.add(new Token(TokenType.IDENTIFIER, word()));
+        } else if (Character.isDigit(c)) {
+          tokens.add(new Token(TokenType.NUMBER, word()));
+        } else {
+          if (c == '(' || c == '[' || c == '{') {
+            depth++;
+          } else if ((c == ')' || c == ']' || c == '}') && depth > 0) {
+            depth--;
+          }
+          tokens.add(new Token(TokenType.PUNCTUATION, String.valueOf(c)));
+          pos++;
+        }
+      }
+
+      tokens.add(new Token(TokenType.EOF, ""));
+      return tokens;
+    }
+
+    private boolean isQuote(int i) {
+      return i < content.length() && (content.charAt(i) == '"' || content.charAt(i) == '\'');
+    }
+
+    private String word() {
+      var start = pos;
+      while (pos < content.length()
+          && (Character.isLetterOrDigit(content.charAt(pos)) || content.charAt(pos) == '_')) {
+        pos++;
+      }
+
+      return content.substring(start, pos);
+    }
+
+    private String string() {
+      var quote = content.charAt(pos);
+      var delimiter =
+          content.startsWith(String.valueOf(quote).repeat(3), pos)
+              ? String.valueOf(quote).repeat(3)
+              : String.valueOf(quote);
+      pos += delimiter.length();
+      var sb = new StringBuilder();
+      while (pos < content.length() && !content.startsWith(delimiter, pos)) {
+        var c = content.charAt(pos++);
+        if (c == '\\' && pos < content.length()) {
+          c = content.charAt(pos++);
+        }
+        sb.append(c);
+      }
+
+      pos += delimiter.length();
+      return sb.toString();
+    }
+  }
+
+  private static class Parser {
+    private final List<Token> tokens;
+    private int pos = 0;
+
+    Parser(List<Token> tokens) {
+      this.tokens = tokens;
+    }
+
+    BuildFile parse() {
+      var rules = new ArrayList<Rule>();
+      while (peek().type() != TokenType.EOF) {
+        var token = next();
+        if (token.type() == TokenType.NEWLINE) {
+          continue;
+        }
+
+        if (token.type() == TokenType.IDENTIFIER && peek().is("(")) {
+          next();
+          rules.add(new Rule(token.text(), arguments()));
+        } else if (token.type() == TokenType.IDENTIFIER && peek().is("=")) {
+          // A variable cannot declare rules, and rules using it will not be understood anyway
+          skipUntil(TokenType.NEWLINE);
+          continue;
+        } else {
+          return new BuildFile(rules, false);
+        }
+
+        if (peek().type() != TokenType.NEWLINE && peek().type() != TokenType.EOF) {
+          return new BuildFile(rules, false);
+        }
+      }
+
+      return new BuildFile(rules, true);
+    }
+
+    // Parses the arguments of a call, after its opening parenthesis. Positional arguments are
+    // named after their index.
+    private Map<String, Optional<Attribute>> arguments() {
+      var arguments = new HashMap<String, Optional<Attribute>>();
+      var index = 0;
+      while (!peek().is(")") && peek().type() != TokenType.EOF) {
+        var name = String.valueOf(index++);
+        if (peek().type() == TokenType.IDENTIFIER && peek(1).is("=")) {
+          name = next().text();
+          next();
+        }
+
+        arguments.put(name, expression());
+        skipSeparator(")");
+      }
+
+      next();
+      return arguments;
+    }
+
+    private Optional<Attribute> expression() {
+      var value = term();
+      while (peek().is("+")) {
+        next();
+        var other = term();
+        value =
+            value.isPresent() && other.isPresent()
+                ? Optional.of(value.get().plus(other.get()))
+                : Optional.empty();
+      }
+
+      if (!peek().is(",") && !peek().is(")") && !peek().is("]")) {
+        // Something like a conditional expression or a method call
+        skipValue();
+        return Optional.empty();
+      }
+
+      return value;
+    }
+
+    private Optional<Attribute> term() {
+      var token = peek();
+      if (token.type() == TokenType.STRING) {
+        next();
+        return Optional.of(new Attribute(List.of(token.text()), List.of()));
+      }
+
+      if (token.is("[")) {
+        next();
+        var values = Optional.of(Attribute.EMPTY);
+        while (!peek().is("]") && peek().type() != TokenType.EOF) {
+          var element = expression();
+          values =
+              values.isPresent() && element.isPresent()
+                  ? Optional.of(values.get().plus(element.get()))
+                  : Optional.empty();
+          skipSeparator("]");
+        }
+
+        next();
+        return values;
+      }
+
+      if (token.type() == TokenType.IDENTIFIER && token.text().equals("glob") && peek(1).is("(")) {
+        next();
+        next();
+        var arguments = arguments();
+        var include = arguments.getOrDefault("0", arguments.get("include"));
+        var exclude = arguments.getOrDefault("1", arguments.get("exclude"));
+        if (include == null || include.isEmpty() || (exclude != null && exclude.isEmpty())) {
+          return Optional.empty();
+        }
+
+        var excluded = exclude == null ? List.<String>of() : exclude.get().values();
+        return Optional.of(
+            new Attribute(List.of(), List.of(new Glob(include.get().values(), excluded))));
+      }
+
+      skipValue();
+      return Optional.empty();
+    }
+
+    // Skips a value we do not understand, stopping before the end of the enclosing list or call
+    private void skipValue() {
+      var depth = 0;
+      while (peek().type() != TokenType.EOF) {
+        var token = peek();
+        if (depth == 0 && (token.is(",") || token.is(")") || token.is("]"))) {
+          return;
+        }
+
+        if (token.is("(") || token.is("[") || token.is("{")) {
+          depth++;
+        } else if (token.is(")") || token.is("]") || token.is("}")) {
+          depth--;
+        }
+        next();
+      }
+    }
+
+    // Skips the comma between two elements, if any. On malformed input, skips whatever is there
+    // instead to make sure we progress.
+    private void skipSeparator(String closing) {
+      if (!peek().is(closing)) {
+        next();
+      }
+    }
+
+    private void skipUntil(TokenType type) {
+      while (peek().type() != type && peek().type() != TokenType.EOF) {
+        next();
+      }
+    }
+
+    private Token peek() {
+      return peek(0);
+    }
+
+    private Token peek(int offset) {
+      return tokens.get(Math.min(pos + offset, tokens.size() - 1));
+    }
+
+    private Token next() {
+      var token = peek();
+      pos = Math.min(pos + 1, tokens.size() - 1);
+      return token;
+    }
+  }
+}
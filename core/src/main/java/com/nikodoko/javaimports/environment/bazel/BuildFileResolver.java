@@ -0,0 +1,359 @@
+package com.nikodoko.javaimports.environment.bazel;
+
+import com.nikodoko.javaimports.common.telemetry.Logs;
+import com.nikodoko.javaimports.environment.shared.Dependency;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Computes what {@code bazel query deps(...)} would return by reading BUILD files and the {@code
+ * maven_install.json} lockfile directly, which avoids starting a bazel server altogether.
+ *
+ * <p>This only handles simple setups: java rules with literal attributes, pinned {@code
+ * rules_jvm_external} dependencies that have already been fetched. Whenever the results could
+ * differ from those of the query, none are returned.
+ */
+class BuildFileResolver {
+  private static final Logger log = Logs.getLogger(BuildFileResolver.class.getName());
+  private static final Set<String> JAVA_RULES =
+      Set.of("java_library", "java_binary", "java_test", "java_import");
+  private static final List<String> DEPENDENCY_ATTRIBUTES =
+      List.of("deps", "exports", "runtime_deps");
+  private static final String MAVEN_REPOSITORY = "maven";
+
+  private static class AmbiguousException extends Exception {
+    AmbiguousException(String message) {
+      super(message);
+    }
+  }
+
+  private record Target(String pkg, BuildFile.Rule rule) {}
+
+  private final Path workspaceRoot;
+  private final Path outputBase;
+  private final boolean isModule;
+  private final MavenInstall install;
+  private final Map<Path, Optional<BuildFile>> buildFiles = new HashMap<>();
+
+  private BuildFileResolver(
+      Path workspaceRoot, Path outputBase, boolean isModule, MavenInstall install) {
+    this.workspaceRoot = workspaceRoot;
+    this.outputBase = outputBase;
+    this.isModule = isModule;
+    this.install = install;
+  }
+
+  /**
+   * Returns the dependencies of the rules containing {@code file} in their sources, or {@code
+   * Optional.empty()} if they cannot be determined without running bazel.
+   */
+  static Optional<BazelQueryResults> resolve(
+      Path workspaceRoot, Path outputBase, boolean isModule, Path targetRoot, Path file) {
+    try {
+      if (outputBase == null) {
+        throw new AmbiguousException("unknown output base");
+      }
+
+      var install = MavenInstall.read(workspaceRoot);
+      if (install.isEmpty()) {
+        throw new AmbiguousException("no supported " + MavenInstall.NAME);
+      }
+
+      return Optional.of(
+          new BuildFileResolver(workspaceRoot, outputBase, isModule, install.get())
+              .resolve(targetRoot, file));
+    } catch (AmbiguousException | IOException | RuntimeException e) {
+      log.info(String.format("could not resolve dependencies from BUILD files: %s", e));
+      return Optional.empty();
+    }
+  }
+
+  private BazelQueryResults resolve(Path targetRoot, Path file)
+      throws AmbiguousException, IOException {
+    var pkg = pkg(targetRoot);
+    var roots = new ArrayList<Target>();
+    for (var rule : buildFile(targetRoot).rules) {
+      var srcs = rule.attribute("srcs");
+      if (srcs.isEmpty()) {
+        throw new AmbiguousException("cannot read srcs of " + rule.name());
+      }
+
+      if (!files(pkg, srcs.get()).contains(file)) {
+        continue;
+      }
+
+      if (!JAVA_RULES.contains(rule.kind())) {
+        throw new AmbiguousException("%s is in the sources of a %s".formatted(file, rule.kind()));
+      }
+
+      roots.add(new Target(pkg, rule));
+    }
+
+    if (roots.isEmpty()) {
+      throw new AmbiguousException("no rule found for " + file);
+    }
+
+    // Explore local targets layer by layer, to mimic the ranks of the query results
+    var srcs = new LinkedHashMap<Path, Dependency.Kind>();
+    var artifacts = new LinkedHashMap<MavenInstall.Artifact, Dependency.Kind>();
+    var visited = new HashSet<String>();
+    var layer = roots;
+    var depth = 0;
+    while (!layer.isEmpty()) {
+      var next = new ArrayList<Target>();
+      for (var target : layer) {
+        // The sources of direct dependencies are considered direct as well
+        var kind = depth <= 1 ? Dependency.Kind.DIRECT : Dependency.Kind.TRANSITIVE;
+        for (var src : sources(target.pkg(), target.rule())) {
+          srcs.putIfAbsent(src, kind);
+        }
+
+        for (var label : dependencies(target.rule())) {
+          if (label.startsWith("@")) {
+            var artifact = artifact(label);
+            artifacts.putIfAbsent(
+                artifact, depth == 0 ? Dependency.Kind.DIRECT : Dependency.Kind.TRANSITIVE);
+            continue;
+          }
+
+          var dependency = target(target.pkg(), label);
+          if (visited.add(dependency.pkg() + ":" + dependency.rule().name().get())) {
+            next.add(dependency);
+          }
+        }
+      }
+
+      layer = next;
+      depth++;
+    }
+
+    var deps = new ArrayList<BazelDependency>();
+    for (var entry : closure(artifacts).entrySet()) {
+      deps.add(new BazelDependency(entry.getValue(), jar(entry.getKey())));
+    }
+
+    return new BazelQueryResults(
+        srcs.entrySet().stream().map(e -> new BazelDependency(e.getValue(), e.getKey())).toList(),
+        deps);
+  }
+
+  // Adds the transitive dependencies of artifacts, as declared in the lockfile
+  private Map<MavenInstall.Artifact, Dependency.Kind> closure(
+      Map<MavenInstall.Artifact, Dependency.Kind> artifacts) throws AmbiguousException {
+    var closure = new LinkedHashMap<>(artifacts);
+    var toVisit = new ArrayList<>(artifacts.keySet());
+    while (!toVisit.isEmpty()) {
+      var artifact = toVisit.remove(0);
+      var dependencies = install.dependencies(artifact);
+      if (dependencies.isEmpty()) {
+        throw new AmbiguousException("incomplete dependencies for " + artifact.key());
+      }
+
+      for (var dependency : dependencies.get()) {
+        if (closure.putIfAbsent(dependency, Dependency.Kind.TRANSITIVE) == null) {
+          toVisit.add(dependency);
+        }
+      }
+    }
+
+    return closure;
+  }
+
+  private Path jar(MavenInstall.Artifact artifact) throws AmbiguousException {
+    var repository =
+        isModule
+            ? "@@rules_jvm_external~~maven~" + artifact.repositoryName()
+            : "@" + artifact.repositoryName();
+    var jar = BazelQueryResults.jar(outputBase, isModule, repository + "//file:" + artifact.path());
+    if (jar == null || !Files.exists(jar)) {
+      // Most likely not fetched yet, which bazel query would do
+      throw new AmbiguousException("no jar found for " + artifact.key());
+    }
+
+    return jar;
+  }
+
+  private MavenInstall.Artifact artifact(String label) throws AmbiguousException {
+    var separator = label.indexOf("//:");
+    var repository = separator == -1 ? "" : label.substring(0, separator).replace("@", "");
+    if (!repository.equals(MAVEN_REPOSITORY)) {
+      throw new AmbiguousException("unsupported external dependency " + label);
+    }
+
+    var artifact = install.artifactForTarget(label.substring(separator + "//:".length()));
+    if (artifact.isEmpty()) {
+      throw new AmbiguousException("unknown maven dependency " + label);
+    }
+
+    return artifact.get();
+  }
+
+  private Target target(String pkg, String label) throws AmbiguousException, IOException {
+    var targetPkg = pkg;
+    var name = label;
+    if (label.startsWith("//")) {
+      var separator = label.indexOf(':');
+      targetPkg = label.substring(2, separator == -1 ? label.length() : separator);
+      name =
+          separator == -1
+              ? targetPkg.substring(targetPkg.lastIndexOf('/') + 1)
+              : label.substring(separator + 1);
+    } else if (label.startsWith(":")) {
+      name = label.substring(1);
+    }
+
+    for (var rule : buildFile(workspaceRoot.resolve(targetPkg)).rules) {
+      if (rule.name().filter(name::equals).isPresent()) {
+        if (!JAVA_RULES.contains(rule.kind())) {
+          throw new AmbiguousException("%s is a %s".formatted(label, rule.kind()));
+        }
+
+        return new Target(targetPkg, rule);
+      }
+    }
+
+    // Probably declared by a macro
+    throw new AmbiguousException("no rule found for " + label);
+  }
+
+  private List<String> dependencies(BuildFile.Rule rule) throws AmbiguousException {
+    var dependencies = new ArrayList<String>();
+    for (var name : DEPENDENCY_ATTRIBUTES) {
+      var attribute = rule.attribute(name);
+      if (attribute.isEmpty() || !attribute.get().globs().isEmpty()) {
+        throw new AmbiguousException("cannot read %s of %s".formatted(name, rule.name()));
+      }
+
+      dependencies.addAll(attribute.get().values());
+    }
+
+    return dependencies;
+  }
+
+  private List<Path> sources(String pkg, BuildFile.Rule rule)
+      throws AmbiguousException, IOException {
+    var srcs = rule.attribute("srcs");
+    if (srcs.isEmpty()) {
+      throw new AmbiguousException("cannot read srcs of " + rule.name());
+    }
+
+    for (var src : srcs.get().values()) {
+      if (!src.endsWith(".java")) {
+        // Generated sources, filegroups...
+        throw new AmbiguousException("unsupported source " + src);
+      }
+    }
+
+    return files(pkg, srcs.get());
+  }
+
+  // Lists the files referenced by an attribute, assuming all its values are files
+  private List<Path> files(String pkg, BuildFile.Attribute attribute) throws IOException {
+    var directory = workspaceRoot.resolve(pkg);
+    var files = new ArrayList<Path>();
+    for (var value : attribute.values()) {
+      if (value.startsWith("//")) {
+        files.add(workspaceRoot.resolve(value.substring(2).replace(':', '/')));
+      } else {
+        files.add(directory.resolve(value.startsWith(":") ? value.substring(1) : value));
+      }
+    }
+
+    for (var glob : attribute.globs()) {
+      files.addAll(expand(directory, glob));
+    }
+
+    return files;
+  }
+
+  // Lists the files matching a glob, which does not cross package boundaries
+  private static List<Path> expand(Path directory, BuildFile.Glob glob) throws IOException {
+    var include = glob.include().stream().map(BuildFileResolver::toRegex).toList();
+    var exclude = glob.exclude().stream().map(BuildFileResolver::toRegex).toList();
+    var found = new ArrayList<Path>();
+    Files.walkFileTree(
+        directory,
+        new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            if (!dir.equals(directory) && isPackage(dir)) {
+              return FileVisitResult.SKIP_SUBTREE;
+            }
+
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            var relative = directory.relativize(file).toString().replace('\\', '/');
+            if (include.stream().anyMatch(p -> p.matcher(relative).matches())
+                && exclude.stream().noneMatch(p -> p.matcher(relative).matches())) {
+              found.add(file);
+            }
+
+            return FileVisitResult.CONTINUE;
+          }
+        });
+
+    found.sort(Path::compareTo);
+    return found;
+  }
+
+  private static boolean isPackage(Path directory) {
+    return BuildFile.NAMES.stream().anyMatch(n -> Files.exists(directory.resolve(n)));
+  }
+
+  // Unlike other glob implementations, ** also matches zero directories in bazel
+  static Pattern toRegex(String glob) {
+    var regex = new StringBuilder();
+    for (var i = 0; i < glob.length(); i++) {
+      var c = glob.charAt(i);
+      if (glob.startsWith("**/", i)) {
+        regex.append("(.*/)?");
+        i += 2;
+      } else if (glob.startsWith("**", i)) {
+        regex.append(".*");
+        i += 1;
+      } else if (c == '*') {
+        regex.append("[^/]*");
+      } else if (c == '?') {
+        regex.append("[^/]");
+      } else {
+        regex.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+
+    return Pattern.compile(regex.toString());
+  }
+
+  private BuildFile buildFile(Path directory) throws AmbiguousException, IOException {
+    if (!buildFiles.containsKey(directory)) {
+      buildFiles.put(directory, BuildFile.read(directory));
+    }
+
+    var buildFile = buildFiles.get(directory);
+    if (buildFile.isEmpty() || !buildFile.get().isComplete) {
+      throw new AmbiguousException("cannot read BUILD file in " + directory);
+    }
+
+    return buildFile.get();
+  }
+
+  private String pkg(Path directory) {
+    return workspaceRoot.relativize(directory).toString().replace('\\', '/');
+  }
+}
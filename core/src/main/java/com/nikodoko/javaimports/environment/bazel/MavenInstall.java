@@ -0,0 +1,258 @@
+package com.nikodoko.javaimports.environment.bazel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The content of a {@code maven_install.json} lockfile, as written by {@code rules_jvm_external}
+ * when dependencies are pinned.
+ *
+ * <p>Only the version 2 format is supported.
+ */
+class MavenInstall {
+  static final String NAME = "maven_install.json";
+  private static final String SUPPORTED_VERSION = "2";
+
+  /**
+   * An artifact, identified by a key of the form {@code group:artifact[:packaging[:classifier]]}.
+   */
+  record Artifact(String key, String version) {
+    /** The name of the target exposing this artifact in the {@code @maven} repository. */
+    String targetName() {
+      var parts = key.split(":");
+      var name = parts[0] + ":" + parts[1];
+      if (parts.length > 3) {
+        name += ":" + parts[3];
+      }
+
+      return escape(name);
+    }
+
+    /** The name of the repository in which this artifact's jar is downloaded. */
+    String repositoryName() {
+      return escape(key + ":" + version);
+    }
+
+    /** The path of this artifact's jar in its repository. */
+    String path() {
+      var parts = key.split(":");
+      var jar = parts[1] + "-" + version;
+      if (parts.length > 3) {
+        jar += "-" + parts[3];
+      }
+
+      return String.join("/", "v1", parts[0].replace('.', '/'), parts[1], version, jar + ".jar");
+    }
+  }
+
+  private final Map<String, Artifact> artifacts;
+  private final Map<String, Artifact> artifactsByTargetName = new HashMap<>();
+  private final Map<String, List<String>> dependencies;
+
+  private MavenInstall(Map<String, Artifact> artifacts, Map<String, List<String>> dependencies) {
+    this.artifacts = artifacts;
+    this.dependencies = dependencies;
+    for (var artifact : artifacts.values()) {
+      artifactsByTargetName.put(artifact.targetName(), artifact);
+    }
+  }
+
+  /** Reads the lockfile at the root of {@code workspaceRoot}, if any and if it is supported. */
+  static Optional<MavenInstall> read(Path workspaceRoot) throws IOException {
+    var file = workspaceRoot.resolve(NAME);
+    if (!Files.exists(file)) {
+      return Optional.empty();
+    }
+
+    return parse(new String(Files.readAllBytes(file), UTF_8));
+  }
+
+  @SuppressWarnings("unchecked")
+  static Optional<MavenInstall> parse(String content) {
+    if (!(new Json(content).value() instanceof Map<?, ?> root)
+        || !SUPPORTED_VERSION.equals(root.get("version"))
+        || !(root.get("artifacts") instanceof Map<?, ?> rawArtifacts)) {
+      return Optional.empty();
+    }
+
+    var artifacts = new HashMap<String, Artifact>();
+    for (var entry : ((Map<String, Object>) rawArtifacts).entrySet()) {
+      if (entry.getValue() instanceof Map<?, ?> artifact
+          && artifact.get("version") instanceof String version) {
+        artifacts.put(entry.getKey(), new Artifact(entry.getKey(), version));
+      }
+    }
+
+    var dependencies = new HashMap<String, List<String>>();
+    if (root.get("dependencies") instanceof Map<?, ?> rawDependencies) {
+      for (var entry : ((Map<String, Object>) rawDependencies).entrySet()) {
+        if (entry.getValue() instanceof List<?> deps) {
+          dependencies.put(entry.getKey(), (List<String>) deps);
+        }
+      }
+    }
+
+    return Optional.of(new MavenInstall(artifacts, dependencies));
+  }
+
+  /** Finds the artifact exposed by a target of the {@code @maven} repository. */
+  Optional<Artifact> artifactForTarget(String targetName) {
+    return Optional.ofNullable(artifactsByTargetName.get(targetName));
+  }
+
+  /**
+   * Returns the direct dependencies of an artifact, or {@code Optional.empty()} if one of them is
+   * not part of this lockfile.
+   */
+  Optional<List<Artifact>> dependencies(Artifact artifact) {
+    var found = new ArrayList<Artifact>();
+    for (var key : dependencies.getOrDefault(artifact.key(), List.of())) {
+      var dependency = artifacts.get(key);
+      if (dependency == null) {
+        return Optional.empty();
+      }
+
+      found.add(dependency);
+    }
+
+    return Optional.of(found);
+  }
+
+  // Mimics rules_jvm_external, that replaces all special characters by underscores
+  private static String escape(String s) {
+    return s.replaceAll("[^A-Za-z0-9]", "_");
+  }
+
+  // Just enough JSON to read a lockfile: objects become maps, arrays lists and scalars strings
+  private static class Json {
+    private final String content;
+    private int pos = 0;
+
+    Json(String content) {
+      this.content = content;
+    }
+
+    Object value() {
+      skipWhitespace();
+      if (pos >= content.length()) {
+        return null;
+      }
+
+      var c = content.charAt(pos);
+      if (c == '{') {
+        return object();
+      }
+
+      if (c == '[') {
+        return array();
+      }
+
+      if (c == '"') {
+        return string();
+      }
+
+      var start = pos;
+      while (pos < content.length() && ",}] \t\r\n".indexOf(content.charAt(pos)) == -1) {
+        pos++;
+      }
+
+      if (start == pos) {
+        // Malformed input, make sure we still progress
+        pos++;
+      }
+
+      return content.substring(start, pos);
+    }
+
+    private Map<String, Object> object() {
+      var object = new HashMap<String, Object>();
+      pos++;
+      skipWhitespace();
+      while (pos < content.length() && content.charAt(pos) != '}') {
+        var key = string();
+        skipWhitespace();
+        pos++; // :
+        object.put(key, value());
+        skipWhitespace();
+        if (pos < content.length() && content.charAt(pos) == ',') {
+          pos++;
+          skipWhitespace();
+        }
+      }
+
+      pos++;
+      return object;
+    }
+
+    private List<Object> array() {
+      var array = new ArrayList<Object>();
+      pos++;
+      skipWhitespace();
+      while (pos < content.length() && content.charAt(pos) != ']') {
+        array.add(value());
+        skipWhitespace();
+        if (pos < content.length() && content.charAt(pos) == ',') {
+          pos++;
+          skipWhitespace();
+        }
+      }
+
+      pos++;
+      return array;
+    }
+
+    private String string() {
+      var sb = new StringBuilder();
+      pos++;
+      while (pos < content.length() && content.charAt(pos) != '"') {
+        var c = content.charAt(pos++);
+        if (c == '\\' && pos < content.length()) {
+          c = content.charAt(pos++);
+          switch (c) {
+            case 'b':
+              c = '\b';
+              break;
+            case 'f':
+              c = '\f';
+              break;
+            case 'n':
+              c = '\n';
+              break;
+            case 'r':
+              c = '\r';
+              break;
+            case 't':
+              c = '\t';
+              break;
+            case 'u':
+              if (pos + 4 <= content.length()) {
+                c = (char) Integer.parseInt(content.substring(pos, pos + 4), 16);
+                pos += 4;
+              }
+              break;
+            default:
+              // Quotes, backslashes and slashes stand for themselves
+          }
+        }
+        sb.append(c);
+      }
+
+      pos++;
+      return sb.toString();
+    }
+
+    private void skipWhitespace() {
+      while (pos < content.length() && Character.isWhitespace(content.charAt(pos))) {
+        pos++;
+      }
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package com.nikodoko.javaimports.environment.maven;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.nikodoko.javaimports.common.Import;
+import com.nikodoko.javaimports.common.Selector;
+import com.nikodoko.javaimports.common.Utils;
+import com.nikodoko.javaimports.common.telemetry.Logs;
+import com.nikodoko.javaimports.environment.shared.Dependency;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A lockfile-like summary of the full dependency closure of a Maven project: which jars it contains
+ * and which classes each of them provides.
+ *
+ * <p>Resolving the closure and listing the content of every jar is the most expensive part of a
+ * {@link MavenClassLoader} initialization. As it only changes when the project's POMs do, it is
+ * persisted and keyed by a hash of the POM chain.
+ */
+class DependencySnapshot {
+  private static final Logger log = Logs.getLogger(DependencySnapshot.class.getName());
+  private static final int FORMAT_VERSION = 1;
+  private static final String EXTENSION = ".snapshot";
+
+  record Jar(Dependency.Kind kind, Path path, long lastModified, List<Import> importables)
+      implements Dependency {}
+
+  final List<Jar> jars;
+
+  DependencySnapshot(List<Jar> jars) {
+    this.jars = jars;
+  }
+
+  /**
+   * Returns the location of the snapshot for a project, computed from the content of all the POMs
+   * from which its dependencies were derived.
+   */
+  static Path location(Path directory, Path repository, List<Path> poms) throws IOException {
+    var sb = new StringBuilder(repository.toString());
+    for (var pom : poms) {
+      sb.append('\n').append(pom).append('\n');
+      sb.append(new String(Files.readAllBytes(pom), UTF_8));
+    }
+
+    return directory.resolve(Utils.md5(sb.toString()) + EXTENSION);
+  }
+
+  /** Returns the last modification time of a jar, or -1 if it cannot be read. */
+  static long lastModified(Path jar) {
+    try {
+      return Files.getLastModifiedTime(jar).toMillis();
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  static Optional<DependencySnapshot> read(Path file) {
+    try (var in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) {
+      if (in.readInt() != FORMAT_VERSION) {
+        return Optional.empty();
+      }
+
+      var jarCount = in.readInt();
+      var jars = new ArrayList<Jar>(jarCount);
+      for (var i = 0; i < jarCount; i++) {
+        var kind = Dependency.Kind.values()[in.readByte()];
+        var path = Path.of(in.readUTF());
+        var lastModified = in.readLong();
+        var importCount = in.readInt();
+        var importables = new ArrayList<Import>(importCount);
+        for (var j = 0; j < importCount; j++) {
+          var isStatic = in.readBoolean();
+          var selector = Selector.of(Arrays.asList(in.readUTF().split("\\.")));
+          importables.add(new Import(selector, isStatic));
+        }
+
+        jars.add(new Jar(kind, path, lastModified, importables));
+      }
+
+      return Optional.of(new DependencySnapshot(jars));
+    } catch (NoSuchFileException e) {
+      return Optional.empty();
+    } catch (Exception e) {
+      log.log(Level.WARNING, "ignoring unreadable snapshot " + file, e);
+      return Optional.empty();
+    }
+  }
+
+  /** Writes this snapshot to {@code file}. */
+  void write(Path file) throws IOException {
+    var bytes = new ByteArrayOutputStream();
+    try (var out = new DataOutputStream(bytes)) {
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(jars.size());
+      for (var jar : jars) {
+        out.writeByte(jar.kind().ordinal());
+        out.writeUTF(jar.path().toString());
+        out.writeLong(jar.lastModified());
+        out.writeInt(jar.importables().size());
+        for (var i : jar.importables()) {
+          out.writeBoolean(i.isStatic);
+          out.writeUTF(i.selector.toString());
+        }
+      }
+    }
+
+    Utils.writeAtomically(file, bytes.toByteArray());
+  }
+}
@@ -1,17 +1,25 @@
 package com.nikodoko.javaimports.environment.maven;
 
+import com.google.common.base.Suppliers;
+import com.nikodoko.javaimports.common.Utils;
 import com.nikodoko.javaimports.common.telemetry.Logs;
+import com.nikodoko.javaimports.common.telemetry.Metrics;
 import com.nikodoko.javaimports.common.telemetry.Tag;
 import com.nikodoko.javaimports.common.telemetry.Traces;
 import io.opentracing.Span;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Clock;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -20,79 +28,94 @@ public class LocalMavenRepository implements MavenRepository {
   private static Logger log = Logs.getLogger(LocalMavenRepository.class.getName());
   private static final Path DEFAULT_REPOSITORY =
       Paths.get(System.getProperty("user.home"), ".m2/repository");
+  private static final Clock clock = Clock.systemDefaultZone();
 
   private final MavenDependencyResolver resolver;
-  private final Map<MavenDependency, FlatPom> cache = new ConcurrentHashMap<>();
+  private final Executor executor;
+  // Only read if a POM actually needs to be loaded, which is rare when the dependencies of the
+  // project are already known
+  private final Supplier<PomIndex> poms;
+  // Each effective POM is computed by whoever first registers its future, every other caller waits
+  // on that future instead of loading the same POM a second time (unless waiting could close an
+  // import cycle).
+  private final Map<MavenCoordinates, CompletableFuture<FlatPom>> cache = new ConcurrentHashMap<>();
 
   LocalMavenRepository(MavenDependencyResolver resolver) {
+    this(resolver, Runnable::run);
+  }
+
+  LocalMavenRepository(MavenDependencyResolver resolver, Executor executor) {
+    this(resolver, executor, PomIndex::empty);
+  }
+
+  LocalMavenRepository(
+      MavenDependencyResolver resolver, Executor executor, Supplier<PomIndex> poms) {
     this.resolver = resolver;
+    this.executor = executor;
+    this.poms = Suppliers.memoize(poms::get);
   }
 
   @Override
   public List<MavenDependency> getManagedDependencies(MavenDependency dependency) {
-    var pom = effectivePom(dependency);
+    var pom = effectivePom(dependency, new AtomicInteger());
     return new ArrayList<>(pom.managedDependencies());
   }
 
   // TODO: tentative API, this is most likely only for tests
   public List<MavenDependency> getDirectDependencies(MavenDependency dependency) {
-    return effectivePom(dependency).dependencies();
+    return effectivePom(dependency, new AtomicInteger()).dependencies();
   }
 
   @Override
   public List<MavenDependency> getTransitiveDependencies(
       List<MavenDependency> directDependencies, int maxDepth) {
     var span = Traces.createSpan("LocalMavenRepository.getAllTransitiveDependencies");
-    AtomicInteger conflicts = new AtomicInteger(0);
+    var stats = new TraversalStats();
+    var start = clock.millis();
     try (var __ = Traces.activate(span)) {
-      var directCoordinates =
-          directDependencies.stream().map(d -> d.coordinates()).collect(Collectors.toList());
-      Set<MavenCoordinates> visited = ConcurrentHashMap.newKeySet();
-      visited.addAll(directCoordinates);
-      var versionlessDirectDependencies =
-          directCoordinates.stream().map(MavenCoordinates::hideVersion).collect(Collectors.toSet());
-      var byVersionlessCoordinates =
-          directDependencies.parallelStream()
-              .flatMap(
-                  d ->
-                      getTransitiveDependencies(
-                          span, d, visited, versionlessDirectDependencies, maxDepth)
-                          .stream())
-              .collect(
-                  Collectors.toMap(
-                      d -> d.dependency.coordinates().hideVersion(),
-                      d -> d,
-                      (d1, d2) -> {
-                        conflicts.incrementAndGet();
-                        if (d1.depth < d2.depth) {
-                          return d1;
-                        }
-
-                        if (d2.depth < d1.depth) {
-                          return d2;
-                        }
-
-                        return d1;
-                      }));
-
-      return byVersionlessCoordinates.values().stream()
-          .map(d -> d.dependency)
-          .collect(Collectors.toList());
+      return getTransitiveDependencies(span, directDependencies, maxDepth, stats);
     } finally {
-      Traces.addTags(span, new Tag("conflicts", conflicts.get()));
+      Traces.addTags(
+          span,
+          new Tag("conflicts", stats.conflicts),
+          new Tag("depth", stats.depth),
+          new Tag("dependencies", stats.found),
+          new Tag("poms_loaded", stats.pomsLoaded.get()));
+      Metrics.gauge("maven.transitive.conflicts", stats.conflicts);
+      Metrics.gauge("maven.transitive.depth", stats.depth);
+      Metrics.gauge("maven.transitive.dependencies", stats.found);
+      Metrics.gauge("maven.transitive.poms_loaded", stats.pomsLoaded.get());
+      log.info(
+          String.format(
+              "resolved %d transitive dependencies in %d ms (depth %d, %d conflicts, %d poms"
+                  + " loaded)",
+              stats.found,
+              clock.millis() - start,
+              stats.depth,
+              stats.conflicts,
+              stats.pomsLoaded.get()));
       span.finish();
     }
   }
 
-  // When encounting the same dependency with two different versions, Maven wil pick the nearest
-  // one. This allow us to track how far down the dependency tree a transitive dependency was found.
-  private static class DependencyWithDepth {
+  private static class TraversalStats {
+    int conflicts = 0;
+    int depth = 0;
+    int found = 0;
+    // Loaded during this traversal, possibly by several threads
+    final AtomicInteger pomsLoaded = new AtomicInteger();
+  }
+
+  // A dependency reached during the traversal, along with all the exclusions declared on the path
+  // that led to it (including its own).
+  private static class Node {
     final MavenDependency dependency;
-    final int depth;
+    final Set<MavenDependency.Exclusion> exclusions;
 
-    DependencyWithDepth(MavenDependency dependency, int depth) {
+    Node(MavenDependency dependency, Set<MavenDependency.Exclusion> inherited) {
       this.dependency = dependency;
-      this.depth = depth;
+      this.exclusions = new HashSet<>(inherited);
+      this.exclusions.addAll(dependency.exclusions());
     }
 
     @Override
@@ -101,57 +124,68 @@ public class LocalMavenRepository implements MavenRepository {
     }
   }
 
-  // WARNING: dependency is considered to be a direct dependency of something already, so it will
-  // apply filtering rules
-  private List<DependencyWithDepth> getTransitiveDependencies(
-      Span parentSpan,
-      MavenDependency target,
-      Set<MavenCoordinates> visited,
-      Set<MavenCoordinates.Versionless> versionlessDirectDependencies,
-      int maxDepth) {
-    try (var __ = Traces.activate(parentSpan)) {
-      var span =
-          Traces.createSpan(
-              "LocalMavenRepository.getTransitiveDependencies", new Tag("target", target));
-      try (var ___ = Traces.activate(span)) {
-        Set<MavenDependency.Exclusion> exclusions = ConcurrentHashMap.newKeySet();
-        List<DependencyWithDepth> found = new ArrayList<>();
-        List<MavenDependency> nextLayer = new ArrayList<>();
-        exclusions.addAll(target.exclusions());
-        nextLayer.add(target);
-
-        var depth = 0;
-        while (!nextLayer.isEmpty()) {
-          if (maxDepth >= 0 && depth >= maxDepth) {
-            break;
+  // Walks the whole dependency graph one layer at a time: the POMs of a layer are all loaded in
+  // parallel, then the layer is filtered sequentially in declaration order. When encountering the
+  // same dependency with two different versions, Maven will pick the nearest one (or the first
+  // declared one if both are at the same depth), so we simply keep the first one we see.
+  private List<MavenDependency> getTransitiveDependencies(
+      Span span, List<MavenDependency> directDependencies, int maxDepth, TraversalStats stats) {
+    Set<MavenCoordinates.Versionless> seen = new HashSet<>();
+    List<Node> layer = new ArrayList<>();
+    for (var d : directDependencies) {
+      seen.add(d.coordinates().hideVersion());
+      layer.add(new Node(d, Set.of()));
+    }
+
+    List<MavenDependency> found = new ArrayList<>();
+    while (!layer.isEmpty()) {
+      if (maxDepth >= 0 && stats.depth >= maxDepth) {
+        break;
+      }
+
+      stats.depth += 1;
+      var poms = effectivePoms(span, layer, stats.pomsLoaded);
+      List<Node> nextLayer = new ArrayList<>();
+      for (var i = 0; i < layer.size(); i++) {
+        var parent = layer.get(i);
+        for (var t : poms.get(i).dependencies()) {
+          if (!isTransitiveScope(t)
+              || !isNotOptional(t)
+              || parent.exclusions.contains(MavenDependency.Exclusion.matching(t))) {
+            continue;
           }
 
-          depth += 1;
-          var transitiveDeps =
-              nextLayer.stream()
-                  .flatMap(d -> effectivePom(d).dependencies().stream())
-                  .filter(t -> !visited.contains(t.coordinates()))
-                  .filter(
-                      t -> !versionlessDirectDependencies.contains(t.coordinates().hideVersion()))
-                  .filter(t -> !exclusions.contains(MavenDependency.Exclusion.matching(t)))
-                  .filter(this::isTransitiveScope)
-                  .filter(this::isNotOptional)
-                  .peek(t -> exclusions.addAll(t.exclusions()))
-                  .peek(t -> visited.add(t.coordinates()))
-                  .collect(Collectors.toList());
-          var currentDepth = depth;
-          found.addAll(
-              transitiveDeps.stream()
-                  .map(d -> new DependencyWithDepth(d, currentDepth))
-                  .collect(Collectors.toList()));
-          nextLayer = transitiveDeps;
-        }
+          if (!seen.add(t.coordinates().hideVersion())) {
+            stats.conflicts += 1;
+            continue;
+          }
 
-        return found;
-      } finally {
-        span.finish();
+          found.add(t);
+          nextLayer.add(new Node(t, parent.exclusions));
+        }
       }
+
+      layer = nextLayer;
     }
+
+    stats.found = found.size();
+    return found;
+  }
+
+  private List<FlatPom> effectivePoms(Span span, List<Node> layer, AtomicInteger loaded) {
+    var tasks =
+        layer.stream()
+            .map(
+                n ->
+                    CompletableFuture.supplyAsync(
+                        () -> {
+                          try (var __ = Traces.activate(span)) {
+                            return effectivePom(n.dependency, loaded);
+                          }
+                        },
+                        executor))
+            .toList();
+    return Utils.sequence(tasks).join();
   }
 
   // According to the maven spec, the provided, system and test scope are not transitive. See:
@@ -166,11 +200,55 @@ public class LocalMavenRepository implements MavenRepository {
     return !dependency.optional();
   }
 
-  private FlatPom effectivePom(MavenDependency dependency) {
-    if (cache.containsKey(dependency)) {
-      return cache.get(dependency);
+  // Counts the POMs it has to load in loaded
+  private FlatPom effectivePom(MavenDependency dependency, AtomicInteger loaded) {
+    return effectivePom(dependency, Set.of(), loaded);
+  }
+
+  // importing holds the POMs being computed on this call chain, that is those importing (directly
+  // or not) the one we are looking for
+  private FlatPom effectivePom(
+      MavenDependency dependency, Set<MavenCoordinates> importing, AtomicInteger loaded) {
+    var coordinates = dependency.coordinates();
+    if (importing.contains(coordinates)) {
+      // Maven refuses import cycles, and reports them instead of building the project. We cannot
+      // do the same, so ignore the import that closes the cycle.
+      log.log(Level.WARNING, "ignoring import cycle on " + coordinates);
+      return FlatPom.builder().build();
+    }
+
+    var pom = new CompletableFuture<FlatPom>();
+    var existing = cache.putIfAbsent(coordinates, pom);
+    if (existing != null) {
+      // Another call chain is computing it, but it might be waiting for one of the POMs we are
+      // computing in turn. Only top level callers, which hold nothing, can safely wait for it.
+      if (existing.isDone() || importing.isEmpty()) {
+        return existing.join();
+      }
+
+      return loadEffectivePom(dependency, with(importing, coordinates), loaded);
+    }
+
+    // Computed on the current thread rather than on the executor: the import scope below recurses
+    // into effectivePom, and waiting on a queued task from within a pool thread could starve it.
+    try {
+      pom.complete(loadEffectivePom(dependency, with(importing, coordinates), loaded));
+    } catch (Throwable t) {
+      pom.completeExceptionally(t);
     }
 
+    return pom.join();
+  }
+
+  private static Set<MavenCoordinates> with(Set<MavenCoordinates> importing, MavenCoordinates c) {
+    var chain = new HashSet<>(importing);
+    chain.add(c);
+    return chain;
+  }
+
+  private FlatPom loadEffectivePom(
+      MavenDependency dependency, Set<MavenCoordinates> importing, AtomicInteger loaded) {
+    loaded.incrementAndGet();
     var pom = getPomMergedWithParentPoms(dependency);
 
     // According to the maven documentation, managed dependencies with scope "import" should be
@@ -180,23 +258,22 @@ public class LocalMavenRepository implements MavenRepository {
     var managedDepsToAdd =
         pom.managedDependencies().stream()
             .filter(d -> d.hasScope("import"))
-            .map(this::effectivePom)
+            .map(d -> effectivePom(d, importing, loaded))
             .flatMap(p -> p.managedDependencies().stream())
             .collect(Collectors.toList());
     pom.merge(FlatPom.builder().managedDependencies(managedDepsToAdd).build());
 
-    cache.put(dependency, pom);
     return pom;
   }
 
   private FlatPom getPomMergedWithParentPoms(MavenDependency dependency) {
     try {
       var location = resolver.resolve(dependency);
-      var pom = MavenPomLoader.load(location.pom).pom;
+      var pom = load(location.pom);
       while (pom.hasParent()) {
         var parent = pom.maybeParent().get();
         var parentLocation = resolver.resolve(parent.coordinates);
-        var parentPom = MavenPomLoader.load(parentLocation.pom).pom;
+        var parentPom = load(parentLocation.pom);
         pom.merge(parentPom);
       }
 
@@ -207,4 +284,11 @@ public class LocalMavenRepository implements MavenRepository {
       return FlatPom.builder().build();
     }
   }
+
+  private FlatPom load(Path pom) {
+    return poms.get()
+        .find(pom)
+        .map(MavenPomLoader.Declared::flatten)
+        .orElseGet(() -> MavenPomLoader.load(pom).pom);
+  }
 }
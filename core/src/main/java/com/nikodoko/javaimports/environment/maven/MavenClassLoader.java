@@ -2,15 +2,22 @@ package com.nikodoko.javaimports.environment.maven;
 
 import com.nikodoko.javaimports.common.ClassEntity;
 import com.nikodoko.javaimports.common.Import;
+import com.nikodoko.javaimports.common.Utils;
 import com.nikodoko.javaimports.common.telemetry.Logs;
 import com.nikodoko.javaimports.common.telemetry.Tag;
 import com.nikodoko.javaimports.common.telemetry.Traces;
 import com.nikodoko.javaimports.environment.shared.Dependency;
-import com.nikodoko.javaimports.environment.shared.LazyJars;
+import com.nikodoko.javaimports.environment.shared.LazyJar;
+import io.opentracing.Span;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -30,51 +37,110 @@ public class MavenClassLoader {
   private final CoordinatesResolver resolver;
   private final List<MavenDependency> directDependencies;
   private final Executor executor;
+  private final Optional<Path> snapshotFile;
 
-  private Optional<LazyJars> loader = null;
+  private record IndexedJar(LazyJar jar, long lastModified) {}
+
+  private Optional<Map<Import, IndexedJar>> index = null;
+  private boolean isFresh = false;
 
   public MavenClassLoader(
       MavenRepository repository,
       CoordinatesResolver resolver,
       Executor executor,
       List<MavenDependency> directDependencies) {
+    this(repository, resolver, executor, directDependencies, Optional.empty());
+  }
+
+  /**
+   * A {@code MavenClassLoader} that persists the dependency closure it resolves to {@code
+   * snapshotFile}, and reuses it on subsequent runs instead of resolving it again.
+   */
+  public MavenClassLoader(
+      MavenRepository repository,
+      CoordinatesResolver resolver,
+      Executor executor,
+      List<MavenDependency> directDependencies,
+      Optional<Path> snapshotFile) {
     this.repository = repository;
     this.resolver = resolver;
     this.directDependencies = directDependencies;
     this.executor = executor;
+    this.snapshotFile = snapshotFile;
   }
 
   private void init() {
     var span = Traces.createSpan("MavenClassLoader.init");
     try (var __ = Traces.activate(span)) {
-      initInstrumented();
+      initInstrumented(span);
     } catch (Throwable t) {
       log.log(Level.WARNING, "Error initializing MavenClassLoader", t);
-      this.loader = Optional.empty();
+      this.index = Optional.empty();
     } finally {
       span.finish();
     }
   }
 
-  private record MavenJar(Dependency.Kind kind, Path path) implements Dependency {}
+  private void initInstrumented(Span span) {
+    var snapshot = snapshotFile.flatMap(DependencySnapshot::read);
+    Traces.addTags(span, new Tag("from_snapshot", snapshot.isPresent()));
+    if (snapshot.isPresent()) {
+      this.index = Optional.of(index(snapshot.get()));
+      return;
+    }
+
+    var resolved = resolve(span);
+    isFresh = true;
+    snapshotFile.ifPresent(f -> save(resolved, f));
+    this.index = Optional.of(index(resolved));
+  }
 
-  private void initInstrumented() {
+  private DependencySnapshot resolve(Span span) {
     var transitive =
         repository.getTransitiveDependencies(directDependencies, -1).stream()
             .map(this::maybeFindDependency)
             .filter(Optional::isPresent)
-            .map(p -> new MavenJar(Dependency.Kind.TRANSITIVE, p.get()));
+            .map(p -> load(span, Dependency.Kind.TRANSITIVE, p.get()));
     var direct =
         directDependencies.stream()
             .map(this::maybeFindDependency)
             .filter(Optional::isPresent)
-            .map(p -> new MavenJar(Dependency.Kind.DIRECT, p.get()));
-    var all = Stream.concat(transitive, direct).toList();
-    var loader = new LazyJars(executor, all);
-    // TODO: handle progressive load for maven
-    loader.load(Dependency.Kind.TRANSITIVE);
-    loader.load(Dependency.Kind.DIRECT);
-    this.loader = Optional.of(loader);
+            .map(p -> load(span, Dependency.Kind.DIRECT, p.get()));
+    var tasks = Stream.concat(transitive, direct).toList();
+    return new DependencySnapshot(Utils.sequence(tasks).join());
+  }
+
+  private CompletableFuture<DependencySnapshot.Jar> load(
+      Span span, Dependency.Kind kind, Path path) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try (var __ = Traces.activate(span)) {
+            var lastModified = DependencySnapshot.lastModified(path);
+            var importables = new ArrayList<>(new LazyJar(path).findAllImports());
+            return new DependencySnapshot.Jar(kind, path, lastModified, importables);
+          }
+        },
+        executor);
+  }
+
+  private void save(DependencySnapshot snapshot, Path file) {
+    try {
+      snapshot.write(file);
+    } catch (IOException e) {
+      log.log(Level.WARNING, "could not write dependency snapshot to " + file, e);
+    }
+  }
+
+  private static Map<Import, IndexedJar> index(DependencySnapshot snapshot) {
+    var index = new HashMap<Import, IndexedJar>();
+    for (var jar : snapshot.jars) {
+      var indexed = new IndexedJar(new LazyJar(jar.path(), jar.importables()), jar.lastModified());
+      for (var i : jar.importables()) {
+        index.putIfAbsent(i, indexed);
+      }
+    }
+
+    return index;
   }
 
   private Optional<Path> maybeFindDependency(MavenDependency d) {
@@ -104,10 +170,36 @@ public class MavenClassLoader {
   }
 
   private Optional<ClassEntity> findClassInstrumented(Import i) {
-    if (loader == null) {
+    if (index == null) {
       init();
     }
 
-    return loader.map(l -> l.findClass(i)).orElse(Optional.empty());
+    var jar = index.map(idx -> idx.get(i));
+    if (jar.isPresent() && isStale(jar.get())) {
+      // A jar changed since the snapshot was taken (a SNAPSHOT dependency that was rebuilt for
+      // example), so the snapshot cannot be trusted anymore
+      log.info("dependency snapshot is stale, resolving dependencies again");
+      snapshotFile.ifPresent(MavenClassLoader::delete);
+      init();
+      jar = index.map(idx -> idx.get(i));
+    }
+
+    return jar.flatMap(j -> j.jar().findClass(i));
+  }
+
+  private boolean isStale(IndexedJar jar) {
+    if (isFresh) {
+      return false;
+    }
+
+    return DependencySnapshot.lastModified(jar.jar().path()) != jar.lastModified();
+  }
+
+  private static void delete(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      log.log(Level.WARNING, "could not delete " + file, e);
+    }
   }
 }
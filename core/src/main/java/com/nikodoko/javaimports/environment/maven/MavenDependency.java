@@ -21,6 +21,14 @@ class MavenDependency {
       return new Exclusion(dependency.groupId(), dependency.artifactId());
     }
 
+    String groupId() {
+      return groupId;
+    }
+
+    String artifactId() {
+      return artifactId;
+    }
+
     boolean matches(MavenDependency dependency) {
       return dependency.groupId().equals(groupId) && dependency.artifactId().equals(artifactId);
     }
@@ -13,11 +13,14 @@ class MavenDependencyFinder {
   static final class Result {
     final List<MavenDependency> dependencies = new ArrayList<>();
     final List<MavenEnvironmentException> errors = new ArrayList<>();
+    // All the POMs that were read to compute the dependencies, starting with the module's own
+    final List<Path> poms = new ArrayList<>();
 
     public String toString() {
       return MoreObjects.toStringHelper(this)
           .add("dependencies", dependencies)
           .add("errors", errors)
+          .add("poms", poms)
           .toString();
     }
   }
@@ -41,6 +44,7 @@ class MavenDependencyFinder {
   private Result findAllInstrumented(Path moduleRoot) {
     var loaded = MavenPomLoader.load(moduleRoot.resolve(POM));
     var result = new Result();
+    result.poms.add(moduleRoot.resolve(POM));
 
     var pom = loaded.pom;
     var errors = new ArrayList<>(loaded.errors);
@@ -49,6 +53,7 @@ class MavenDependencyFinder {
       // We need to normalize because the relative parent path often includes the special name ..
       var parentPath = currentPomDir.resolve(relativeParentPomPath(pom)).normalize();
       loaded = MavenPomLoader.load(parentPath);
+      result.poms.add(parentPath);
       errors.addAll(loaded.errors);
       pom.merge(loaded.pom);
       currentPomDir = parentPath.getParent();
@@ -4,7 +4,6 @@ import com.google.common.base.MoreObjects;
 import com.nikodoko.javaimports.common.telemetry.Tag;
 import com.nikodoko.javaimports.common.telemetry.Traces;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
@@ -25,13 +24,19 @@ class MavenDependencyResolver {
   }
 
   private final Path repository;
+  private final VersionCatalog versions;
 
-  private MavenDependencyResolver(Path repository) {
+  private MavenDependencyResolver(Path repository, VersionCatalog versions) {
     this.repository = repository;
+    this.versions = versions;
   }
 
   static MavenDependencyResolver withRepository(Path repository) {
-    return new MavenDependencyResolver(repository);
+    return withRepository(repository, new VersionCatalog());
+  }
+
+  static MavenDependencyResolver withRepository(Path repository, VersionCatalog versions) {
+    return new MavenDependencyResolver(repository, versions);
   }
 
   public PrimaryArtifact resolve(MavenDependency dependency) throws IOException {
@@ -72,8 +77,8 @@ class MavenDependencyResolver {
     var versionString = maybeVersion.map(MavenString::toString).orElse("");
     if (maybeVersion.isEmpty() || maybeVersion.get().hasPropertyReferences()) {
       // If we get there, that means that we did not find enough information in the POM. We don't
-      // know what version is being used, so we just use the first one we find.
-      versionString = getFirstAvailableVersion(dependencyRepository);
+      // know what version is being used, so we use the most recent one we have.
+      versionString = getLatestAvailableVersion(dependencyRepository);
     }
 
     return Paths.get(
@@ -91,16 +96,8 @@ class MavenDependencyResolver {
     return String.format("%s-%s", artifactId, version);
   }
 
-  private String getFirstAvailableVersion(Path dependencyRepository) throws IOException {
-    var maybeVersion =
-        Files.find(
-                dependencyRepository,
-                1,
-                (path, attributes) -> Files.isDirectory(path) && !path.equals(dependencyRepository))
-            .map(p -> p.getFileName().toString())
-            // We sort it to have a deterministic result in tests
-            .sorted()
-            .findFirst();
+  private String getLatestAvailableVersion(Path dependencyRepository) throws IOException {
+    var maybeVersion = versions.latest(dependencyRepository);
     if (maybeVersion.isEmpty()) {
       throw new RuntimeException("Did not find any available version in " + dependencyRepository);
     }
@@ -2,6 +2,7 @@ package com.nikodoko.javaimports.environment.maven;
 
 import com.nikodoko.javaimports.Options;
 import com.nikodoko.javaimports.common.ClassEntity;
+import com.nikodoko.javaimports.common.Deadline;
 import com.nikodoko.javaimports.common.Identifier;
 import com.nikodoko.javaimports.common.Import;
 import com.nikodoko.javaimports.common.JavaSourceFile;
@@ -13,17 +14,20 @@ import com.nikodoko.javaimports.environment.Environment;
 import com.nikodoko.javaimports.environment.maven.MavenProjectFinder.MavenSourceFile;
 import com.nikodoko.javaimports.environment.shared.LazyJar;
 import com.nikodoko.javaimports.environment.shared.LazyJavaProject;
+import com.nikodoko.javaimports.environment.shared.SymbolTable;
 import io.opentracing.Span;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Clock;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -39,29 +43,58 @@ public class MavenEnvironment implements Environment {
   private static final Path DEFAULT_REPOSITORY =
       Paths.get(System.getProperty("user.home"), ".m2/repository");
   private static final Clock clock = Clock.systemDefaultZone();
+  private static final String SNAPSHOT_DIRECTORY = "maven";
 
   private final Path root;
   private final Path fileBeingResolved;
   private final Selector pkgBeingResolved;
   private final Options options;
+  private final Deadline deadline;
   private final MavenDependencyResolver resolver;
   private final MavenRepository repository;
 
   private MavenClassLoader classLoader;
   private Map<Identifier, List<Import>> availableImports = new HashMap<>();
+  private Optional<SymbolTable> symbols = Optional.empty();
+  // Dependencies whose imports are looked up in the symbol table rather than copied to the heap
+  private BitSet indexed = new BitSet();
   private LazyJavaProject project;
   private boolean projectIsParsed = false;
   private boolean isInitialized = false;
 
   public MavenEnvironment(
       Path root, Path fileBeingResolved, Selector pkgBeingResolved, Options options) {
+    this(root, fileBeingResolved, pkgBeingResolved, options, Deadline.none());
+  }
+
+  /**
+   * Dependencies and project files that are not loaded when {@code deadline} is reached are
+   * ignored.
+   */
+  public MavenEnvironment(
+      Path root,
+      Path fileBeingResolved,
+      Selector pkgBeingResolved,
+      Options options,
+      Deadline deadline) {
     this.root = root;
     this.fileBeingResolved = fileBeingResolved;
     this.pkgBeingResolved = pkgBeingResolved;
     this.options = options;
+    this.deadline = deadline;
     var repository = options.repository();
-    this.resolver = MavenDependencyResolver.withRepository(repository);
-    this.repository = new LocalMavenRepository(resolver);
+    this.resolver =
+        MavenDependencyResolver.withRepository(
+            repository, new VersionCatalog(options.cacheDirectory().map(VersionCatalog::location)));
+    this.repository =
+        new LocalMavenRepository(
+            resolver,
+            options.archiveExecutor(),
+            () ->
+                options
+                    .cacheDirectory()
+                    .map(d -> PomIndex.open(PomIndex.location(d)))
+                    .orElseGet(PomIndex::empty));
   }
 
   @Override
@@ -75,6 +108,12 @@ public class MavenEnvironment implements Environment {
     return project.filesInPackage(pkgBeingResolved);
   }
 
+  @Override
+  public List<? extends JavaSourceFile> files() {
+    parseProjectIfNeeded();
+    return project.allFiles();
+  }
+
   @Override
   public Collection<Import> findImports(Identifier i) {
     var span = Traces.createSpan("MavenEnvironment.findImports", new Tag("identifier", i));
@@ -92,6 +131,10 @@ public class MavenEnvironment implements Environment {
 
     var found = new ArrayList<Import>();
     found.addAll(availableImports.getOrDefault(i, List.of()));
+    if (!indexed.isEmpty()) {
+      found.addAll(symbols.get().findImports(i, indexed));
+    }
+
     for (var file : project.allFiles()) {
       found.addAll(file.findImports(i));
     }
@@ -117,13 +160,18 @@ public class MavenEnvironment implements Environment {
     // TODO: do not recompute the set each time
     var allImports =
         availableImports.values().stream().flatMap(List::stream).collect(Collectors.toSet());
-    if (!allImports.contains(i)) {
+    if (!allImports.contains(i) && !isIndexed(i)) {
       return Optional.empty();
     }
 
     return classLoader.findClass(i);
   }
 
+  private boolean isIndexed(Import i) {
+    return !indexed.isEmpty()
+        && symbols.get().findImports(i.selector.identifier(), indexed).contains(i);
+  }
+
   private void init() {
     var span = Traces.createSpan("MavenEnvironment.init");
     try (var __ = Traces.activate(span)) {
@@ -137,14 +185,20 @@ public class MavenEnvironment implements Environment {
     parseProjectIfNeeded();
 
     var start = clock.millis();
-    var directDependencies = findDirectDependencies();
+    var found = findDirectDependencies();
+    var directDependencies = found.dependencies;
+    symbols = options.cacheDirectory().flatMap(d -> SymbolTable.open(SymbolTable.location(d)));
     var imports = extractImportsInDependencies(directDependencies);
 
     availableImports =
         imports.stream().collect(Collectors.groupingBy(i -> i.selector.identifier()));
     classLoader =
         new MavenClassLoader(
-            repository, c -> resolver.resolve(c).jar, options.executor(), directDependencies);
+            repository,
+            c -> resolver.resolve(c).jar,
+            options.archiveExecutor(),
+            directDependencies,
+            snapshotFile(found.poms));
     isInitialized = true;
     log.log(Level.INFO, String.format("init completed in %d ms", clock.millis() - start));
   }
@@ -164,7 +218,7 @@ public class MavenEnvironment implements Environment {
 
     var project = new LazyJavaProject(pkgBeingResolved, srcs);
     // TODO: implement progressive resolution for maven
-    project.eagerlyParse(options.executor());
+    project.eagerlyParse(options.parsingExecutor(), deadline);
     log.info(
         String.format(
             "parsed project in %d ms (total of %d files)",
@@ -174,18 +228,32 @@ public class MavenEnvironment implements Environment {
     projectIsParsed = true;
   }
 
-  private List<MavenDependency> findDirectDependencies() {
+  private MavenDependencyFinder.Result findDirectDependencies() {
     var direct = new MavenDependencyFinder(repository).findAll(root);
     log.info(String.format("found %d direct dependencies: %s", direct.dependencies.size(), direct));
 
-    return direct.dependencies;
+    return direct;
+  }
+
+  private Optional<Path> snapshotFile(List<Path> poms) {
+    if (options.cacheDirectory().isEmpty()) {
+      return Optional.empty();
+    }
+
+    var directory = options.cacheDirectory().get().resolve(SNAPSHOT_DIRECTORY);
+    try {
+      return Optional.of(DependencySnapshot.location(directory, options.repository(), poms));
+    } catch (IOException e) {
+      log.log(Level.WARNING, "could not compute dependency snapshot location", e);
+      return Optional.empty();
+    }
   }
 
   private List<Import> extractImportsInDependencies(List<MavenDependency> directDependencies) {
     var loadedDirect = resolveAndLoad(directDependencies, new Tag("direct_dependencies", true));
     var emptyDirectDeps =
         loadedDirect.stream()
-            .filter(d -> d.importables.isEmpty())
+            .filter(this::isEmpty)
             .map(d -> d.dependency)
             .collect(Collectors.toList());
     // In order to handle cases like `org.junit.jupiter.junit-jupiter`, that point to an empty jar
@@ -201,21 +269,63 @@ public class MavenEnvironment implements Environment {
         String.format(
             "found %d indirect dependencies: %s",
             indirectDependencies.size(), indirectDependencies));
-    return Stream.concat(loadedDirect.stream(), loadedIndirect.stream())
-        .flatMap(d -> d.importables.stream())
-        .collect(Collectors.toList());
+    var loaded = Stream.concat(loadedDirect.stream(), loadedIndirect.stream()).toList();
+    loaded.forEach(d -> d.indexedAs.ifPresent(indexed::set));
+    addToSymbolTable(loaded);
+    return loaded.stream().flatMap(d -> d.importables.stream()).collect(Collectors.toList());
+  }
+
+  // Reading a jar means reading the header of each of its classes, which is slow for large ones.
+  // The jars that had to be read are therefore indexed, so that later runs find their imports in
+  // the symbol table instead.
+  private void addToSymbolTable(List<LoadedDependency> loaded) {
+    var read = loaded.stream().flatMap(d -> d.read.stream()).toList();
+    if (read.isEmpty() || options.cacheDirectory().isEmpty()) {
+      return;
+    }
+
+    var table = SymbolTable.location(options.cacheDirectory().get());
+    var kept = symbols.map(SymbolTable::unmodified).orElseGet(BitSet::new);
+    try {
+      SymbolTable.write(table, read, symbols, kept);
+    } catch (IOException e) {
+      log.log(Level.WARNING, "could not add dependencies to symbol table " + table, e);
+    }
+  }
+
+  private boolean isEmpty(LoadedDependency d) {
+    if (d.indexedAs.isPresent()) {
+      return symbols.get().importCount(d.indexedAs.getAsInt()) == 0;
+    }
+
+    return d.importables.isEmpty();
   }
 
   private static class LoadedDependency {
     final List<Import> importables;
     final MavenDependency dependency;
     final List<MavenDependency> dependencies;
+    // The id of the dependency in the symbol table, if its imports are to be looked up there
+    final OptionalInt indexedAs;
+    // The jar of the dependency, if it had to be read to find its imports
+    final Optional<SymbolTable.Jar> read;
 
     LoadedDependency(
         List<Import> importables, List<MavenDependency> dependencies, MavenDependency dependency) {
+      this(importables, dependencies, dependency, OptionalInt.empty(), Optional.empty());
+    }
+
+    LoadedDependency(
+        List<Import> importables,
+        List<MavenDependency> dependencies,
+        MavenDependency dependency,
+        OptionalInt indexedAs,
+        Optional<SymbolTable.Jar> read) {
       this.importables = importables;
       this.dependencies = dependencies;
       this.dependency = dependency;
+      this.indexedAs = indexedAs;
+      this.read = read;
     }
   }
 
@@ -234,16 +344,19 @@ public class MavenEnvironment implements Environment {
 
   private List<LoadedDependency> resolveAndLoadInstrumented(
       Span span, List<MavenDependency> dependencies) {
+    if (deadline.isReached()) {
+      return List.of();
+    }
+
     var futures =
         dependencies.stream()
             .map(
                 d ->
                     CompletableFuture.supplyAsync(
-                        () -> resolveAndLoad(span, d), options.executor()))
+                        () -> resolveAndLoad(span, d), options.archiveExecutor()))
             .collect(Collectors.toList());
 
-    CompletableFuture.allOf(futures.stream().toArray(CompletableFuture[]::new)).join();
-    return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    return deadline.awaitAll(futures);
   }
 
   private LoadedDependency resolveAndLoad(Span span, MavenDependency dependency) {
@@ -253,10 +366,20 @@ public class MavenEnvironment implements Environment {
       var location = resolver.resolve(dependency);
       log.info(String.format("looking for dependency %s at %s", dependency, location));
 
-      // var importables = MavenDependencyLoader.load(location.jar);
-      var importables = new ArrayList<>(new LazyJar(location.jar).findAllImports());
       var dependencies = MavenPomLoader.load(location.pom).pom.dependencies();
-      loaded = new LoadedDependency(importables, dependencies, dependency);
+      var id = symbols.map(s -> s.find(location.jar)).orElse(OptionalInt.empty());
+      if (id.isPresent()) {
+        loaded = new LoadedDependency(List.of(), dependencies, dependency, id, Optional.empty());
+      } else {
+        // The modification time is read first, so that a jar modified while being read is seen
+        // as stale once indexed
+        var lastModified = DependencySnapshot.lastModified(location.jar);
+        var importables = new ArrayList<>(new LazyJar(location.jar).findAllImports());
+        var jar = new SymbolTable.Jar(location.jar, lastModified, importables);
+        loaded =
+            new LoadedDependency(
+                importables, dependencies, dependency, OptionalInt.empty(), Optional.of(jar));
+      }
     } catch (Exception e) {
       // No matter what happens, we don't want to fail the whole importing process just for that.
       log.log(Level.WARNING, String.format("could not resolve dependency %s", dependency), e);
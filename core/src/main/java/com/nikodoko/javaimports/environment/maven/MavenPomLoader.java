@@ -46,6 +46,25 @@ public class MavenPomLoader {
     }
   }
 
+  /**
+   * The content of a POM as declared in its file, before any inheritance or property substitution.
+   * This is what the {@link PomIndex} stores.
+   */
+  record Declared(
+      List<MavenDependency> dependencies,
+      List<MavenDependency> managedDependencies,
+      Properties properties,
+      Optional<MavenParent> maybeParent) {
+    FlatPom flatten() {
+      return FlatPom.builder()
+          .dependencies(dependencies)
+          .managedDependencies(managedDependencies)
+          .maybeParent(maybeParent)
+          .properties(properties)
+          .build();
+    }
+  }
+
   static Result load(Path pom) {
     var span = Traces.createSpan("MavenPomLoader.load", new Tag("pom_path", pom));
     try (var __ = Traces.activate(span)) {
@@ -65,6 +84,10 @@ public class MavenPomLoader {
   }
 
   private static Result scan(Path pom) throws IOException {
+    return Result.complete(read(pom).flatten());
+  }
+
+  static Declared read(Path pom) throws IOException {
     var model = new DefaultModelReader().read(pom.toFile(), null);
     var dependencies = convert(model.getDependencies());
     var managedDependencies =
@@ -75,13 +98,7 @@ public class MavenPomLoader {
     var properties = model.getProperties();
     enrichProperties(properties, model, pom);
 
-    return Result.complete(
-        FlatPom.builder()
-            .dependencies(dependencies)
-            .managedDependencies(managedDependencies)
-            .maybeParent(getMaybeParent(model))
-            .properties(properties)
-            .build());
+    return new Declared(dependencies, managedDependencies, properties, getMaybeParent(model));
   }
 
   private static void enrichProperties(Properties props, Model model, Path pom) {
@@ -0,0 +1,336 @@
+package com.nikodoko.javaimports.environment.maven;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.nikodoko.javaimports.common.Utils;
+import com.nikodoko.javaimports.common.telemetry.Logs;
+import com.nikodoko.javaimports.environment.shared.MappedTables;
+import com.nikodoko.javaimports.environment.shared.SymbolTable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The parsed content of the POMs of a Maven repository, persisted so that resolving dependencies
+ * does not require parsing the XML of every POM met along the way.
+ *
+ * <p>Each POM is stored as it is declared (see {@link MavenPomLoader.Declared}) along with its last
+ * modification time, and is only decoded when looked up. POMs modified since they were indexed are
+ * ignored, and loaded from their file as if they were not indexed.
+ *
+ * <p>Like the {@link SymbolTable}, the index is a single memory-mapped file, so that opening it
+ * costs the same whatever the size of the repository. It contains the indexed POMs sorted by path,
+ * each with its last modification time and a reference to its encoded content, followed by the
+ * paths and contents themselves. Looking up a POM is a binary search over the mapped paths.
+ */
+public class PomIndex {
+  private static final Logger log = Logs.getLogger(PomIndex.class.getName());
+  private static final String FILE_NAME = "poms.index";
+  private static final int MAGIC = 0x4a49504f;
+  private static final int FORMAT_VERSION = 2;
+  private static final int HEADER_SIZE = 20;
+  private static final int POM_SIZE = 24;
+
+  private final ByteBuffer buffer;
+  private final int count;
+  private final int poms;
+  private final int data;
+
+  private PomIndex(ByteBuffer buffer) {
+    this.buffer = buffer;
+    this.count = buffer.getInt(8);
+    this.poms = buffer.getInt(12);
+    this.data = buffer.getInt(16);
+  }
+
+  static PomIndex empty() {
+    return new PomIndex(ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN));
+  }
+
+  /** Returns where the POM index is stored in {@code cacheDirectory}. */
+  public static Path location(Path cacheDirectory) {
+    return cacheDirectory.resolve(FILE_NAME);
+  }
+
+  /** Maps the POM index stored in {@code file}, or returns an empty index if it cannot be read. */
+  static PomIndex open(Path file) {
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("invalid size " + channel.size());
+      }
+
+      var buffer =
+          channel
+              .map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+              .order(ByteOrder.LITTLE_ENDIAN);
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+        return empty();
+      }
+
+      return new PomIndex(buffer);
+    } catch (NoSuchFileException e) {
+      return empty();
+    } catch (Exception e) {
+      log.log(Level.WARNING, "ignoring unreadable pom index " + file, e);
+      return empty();
+    }
+  }
+
+  int size() {
+    return count;
+  }
+
+  /** Returns the content of {@code pom}, if it is indexed and has not been modified since. */
+  Optional<MavenPomLoader.Declared> find(Path pom) {
+    var id = search(pom);
+    if (id < 0 || lastModified(id) != lastModified(pom)) {
+      return Optional.empty();
+    }
+
+    try {
+      return Optional.of(decode(content(id)));
+    } catch (Exception e) {
+      log.log(Level.WARNING, "could not decode indexed pom " + pom, e);
+      return Optional.empty();
+    }
+  }
+
+  private int search(Path pom) {
+    return MappedTables.search(buffer, poms, POM_SIZE, count, data, pom.toString());
+  }
+
+  private long lastModified(int id) {
+    return buffer.getLong(poms + id * POM_SIZE + 8);
+  }
+
+  private byte[] path(int id) {
+    var row = poms + id * POM_SIZE;
+    return MappedTables.bytes(buffer, data + buffer.getInt(row), buffer.getInt(row + 4));
+  }
+
+  private byte[] content(int id) {
+    var row = poms + id * POM_SIZE;
+    return MappedTables.bytes(buffer, data + buffer.getInt(row + 16), buffer.getInt(row + 20));
+  }
+
+  /**
+   * Adds {@code poms} to the index stored in {@code file}, parsing (on {@code executor}) only those
+   * that are not indexed yet or have been modified since. Other POMs already indexed are kept as
+   * long as they have not been modified either.
+   *
+   * @return the number of POMs that had to be parsed.
+   */
+  public static int refresh(Path file, Collection<Path> poms, Executor executor)
+      throws IOException {
+    var existing = open(file);
+    var seen = new BitSet(existing.count);
+    var tasks = new ArrayList<CompletableFuture<Optional<Indexed>>>(poms.size());
+    var parsed = 0;
+    for (var pom : poms) {
+      var lastModified = lastModified(pom);
+      var id = existing.search(pom);
+      if (id >= 0) {
+        seen.set(id);
+        if (existing.lastModified(id) == lastModified) {
+          tasks.add(CompletableFuture.completedFuture(Optional.of(existing.copy(id))));
+          continue;
+        }
+      }
+
+      parsed++;
+      tasks.add(CompletableFuture.supplyAsync(() -> index(pom, lastModified), executor));
+    }
+
+    var indexed = new ArrayList<Indexed>();
+    Utils.sequence(tasks).join().forEach(i -> i.ifPresent(indexed::add));
+    // POMs indexed by previous runs on other roots
+    for (var id = seen.nextClearBit(0); id < existing.count; id = seen.nextClearBit(id + 1)) {
+      var path = existing.path(id);
+      if (existing.lastModified(id) == lastModified(Paths.get(new String(path, UTF_8)))) {
+        indexed.add(existing.copy(id));
+      }
+    }
+
+    write(file, indexed);
+    return parsed;
+  }
+
+  // Copied as it is stored, without being decoded
+  private Indexed copy(int id) {
+    return new Indexed(path(id), lastModified(id), content(id));
+  }
+
+  private record Indexed(byte[] path, long lastModified, byte[] content) {}
+
+  private static Optional<Indexed> index(Path pom, long lastModified) {
+    try {
+      var content = encode(MavenPomLoader.read(pom));
+      return Optional.of(new Indexed(pom.toString().getBytes(UTF_8), lastModified, content));
+    } catch (Exception e) {
+      // Left out of the index, so that it is loaded (and its error reported) when needed
+      log.log(Level.FINE, "could not index " + pom, e);
+      return Optional.empty();
+    }
+  }
+
+  private static void write(Path file, List<Indexed> indexed) throws IOException {
+    var sorted = new ArrayList<>(indexed);
+    sorted.sort((a, b) -> Arrays.compareUnsigned(a.path(), b.path()));
+    var dataSize = 0L;
+    for (var pom : sorted) {
+      dataSize += pom.path().length + pom.content().length;
+    }
+
+    var data = HEADER_SIZE + sorted.size() * POM_SIZE;
+    if (data + dataSize > Integer.MAX_VALUE) {
+      throw new IOException("pom index is too large: " + (data + dataSize));
+    }
+
+    var index = ByteBuffer.allocate((int) (data + dataSize)).order(ByteOrder.LITTLE_ENDIAN);
+    index.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(sorted.size()).putInt(HEADER_SIZE);
+    index.putInt(data);
+    var offset = 0;
+    for (var pom : sorted) {
+      index.putInt(offset).putInt(pom.path().length).putLong(pom.lastModified());
+      offset += pom.path().length;
+      index.putInt(offset).putInt(pom.content().length);
+      offset += pom.content().length;
+    }
+
+    for (var pom : sorted) {
+      index.put(pom.path()).put(pom.content());
+    }
+
+    Utils.writeAtomically(file, index.array());
+  }
+
+  private static long lastModified(Path pom) {
+    try {
+      return Files.getLastModifiedTime(pom).toMillis();
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  private static byte[] encode(MavenPomLoader.Declared pom) throws IOException {
+    var bytes = new ByteArrayOutputStream();
+    try (var out = new DataOutputStream(bytes)) {
+      writeDependencies(out, pom.dependencies());
+      writeDependencies(out, pom.managedDependencies());
+      var names = pom.properties().stringPropertyNames();
+      out.writeInt(names.size());
+      for (var name : names) {
+        out.writeUTF(name);
+        out.writeUTF(pom.properties().getProperty(name));
+      }
+
+      out.writeBoolean(pom.maybeParent().isPresent());
+      if (pom.maybeParent().isPresent()) {
+        var parent = pom.maybeParent().get();
+        writeNullable(out, parent.coordinates.groupId());
+        writeNullable(out, parent.coordinates.artifactId());
+        writeNullable(out, parent.coordinates.maybeVersion().map(Object::toString).orElse(null));
+        writeNullable(out, parent.maybeRelativePath.map(Path::toString).orElse(null));
+      }
+    }
+
+    return bytes.toByteArray();
+  }
+
+  private static void writeDependencies(DataOutputStream out, List<MavenDependency> dependencies)
+      throws IOException {
+    out.writeInt(dependencies.size());
+    for (var d : dependencies) {
+      writeNullable(out, d.groupId());
+      writeNullable(out, d.artifactId());
+      writeNullable(out, d.version());
+      writeNullable(out, d.type());
+      writeNullable(out, d.classifier().orElse(null));
+      writeNullable(out, d.scope().orElse(null));
+      out.writeBoolean(d.optional());
+      out.writeInt(d.exclusions().size());
+      for (var e : d.exclusions()) {
+        writeNullable(out, e.groupId());
+        writeNullable(out, e.artifactId());
+      }
+    }
+  }
+
+  private static void writeNullable(DataOutputStream out, String s) throws IOException {
+    out.writeBoolean(s != null);
+    if (s != null) {
+      out.writeUTF(s);
+    }
+  }
+
+  private static MavenPomLoader.Declared decode(byte[] content) throws IOException {
+    var in = new DataInputStream(new ByteArrayInputStream(content));
+    var dependencies = readDependencies(in);
+    var managedDependencies = readDependencies(in);
+    var properties = new Properties();
+    var propertyCount = in.readInt();
+    for (var i = 0; i < propertyCount; i++) {
+      properties.setProperty(in.readUTF(), in.readUTF());
+    }
+
+    Optional<MavenParent> maybeParent = Optional.empty();
+    if (in.readBoolean()) {
+      var coordinates =
+          new MavenCoordinates(readNullable(in), readNullable(in), readNullable(in), "pom", null);
+      var relativePath = Optional.ofNullable(readNullable(in)).map(Paths::get);
+      maybeParent = Optional.of(new MavenParent(coordinates, relativePath));
+    }
+
+    return new MavenPomLoader.Declared(dependencies, managedDependencies, properties, maybeParent);
+  }
+
+  private static List<MavenDependency> readDependencies(DataInputStream in) throws IOException {
+    var count = in.readInt();
+    var dependencies = new ArrayList<MavenDependency>(count);
+    for (var i = 0; i < count; i++) {
+      var groupId = readNullable(in);
+      var artifactId = readNullable(in);
+      var version = readNullable(in);
+      var type = readNullable(in);
+      var classifier = readNullable(in);
+      var scope = readNullable(in);
+      var optional = in.readBoolean();
+      var exclusionCount = in.readInt();
+      var exclusions = new ArrayList<MavenDependency.Exclusion>(exclusionCount);
+      for (var j = 0; j < exclusionCount; j++) {
+        exclusions.add(new MavenDependency.Exclusion(readNullable(in), readNullable(in)));
+      }
+
+      dependencies.add(
+          new MavenDependency(
+              groupId, artifactId, version, type, classifier, scope, optional, exclusions));
+    }
+
+    return dependencies;
+  }
+
+  private static String readNullable(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+}
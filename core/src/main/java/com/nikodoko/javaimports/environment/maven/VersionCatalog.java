@@ -0,0 +1,304 @@
+package com.nikodoko.javaimports.environment.maven;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Suppliers;
+import com.nikodoko.javaimports.common.Utils;
+import com.nikodoko.javaimports.common.telemetry.Logs;
+import com.nikodoko.javaimports.environment.shared.MappedTables;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import org.apache.maven.artifact.versioning.ComparableVersion;
+
+/**
+ * The versions of each artifact available in a Maven repository, used when a dependency does not
+ * say which version it needs.
+ *
+ * <p>The versions of an artifact are listed once per process, and can be persisted along with the
+ * other indexes so that they are not even listed once. A persisted artifact is only trusted if its
+ * directory has not been modified since, as adding or removing a version modifies it.
+ *
+ * <p>The persisted catalog is laid out like the {@link PomIndex}: a memory-mapped file containing
+ * the artifacts sorted by directory, each with its last modification time and a reference to its
+ * encoded versions, followed by the directories and versions themselves. Only the versions of the
+ * artifacts looked up are decoded.
+ */
+public class VersionCatalog {
+  private static final Logger log = Logs.getLogger(VersionCatalog.class.getName());
+  private static final String FILE_NAME = "versions.index";
+  private static final int MAGIC = 0x4a495643;
+  private static final int FORMAT_VERSION = 2;
+  private static final int HEADER_SIZE = 20;
+  private static final int ARTIFACT_SIZE = 24;
+  private static final String SNAPSHOT_SUFFIX = "-SNAPSHOT";
+  // From the most recent version to the oldest, as Maven orders them
+  private static final Comparator<String> NEWEST_FIRST =
+      Comparator.comparing(ComparableVersion::new, Comparator.reverseOrder());
+
+  private final Supplier<Persisted> persisted;
+  private final Map<Path, List<String>> versions = new ConcurrentHashMap<>();
+
+  VersionCatalog() {
+    this(Optional.empty());
+  }
+
+  /** Creates a catalog that first looks artifacts up in the catalog persisted in {@code file}. */
+  VersionCatalog(Optional<Path> file) {
+    // Only mapped if a version is actually missing, which is rare when POMs are well defined
+    this.persisted = Suppliers.memoize(() -> file.map(Persisted::open).orElseGet(Persisted::empty));
+  }
+
+  /** Returns where the version catalog is stored in {@code cacheDirectory}. */
+  public static Path location(Path cacheDirectory) {
+    return cacheDirectory.resolve(FILE_NAME);
+  }
+
+  /**
+   * Returns the version of the artifact stored in {@code directory} that should be used when none
+   * is specified: the most recent release if there is one, the most recent snapshot otherwise.
+   */
+  Optional<String> latest(Path directory) throws IOException {
+    var available = versions(directory);
+    return available.stream()
+        .filter(v -> !v.endsWith(SNAPSHOT_SUFFIX))
+        .findFirst()
+        .or(() -> available.stream().findFirst());
+  }
+
+  /** Returns the versions of the artifact stored in {@code directory}, most recent first. */
+  List<String> versions(Path directory) throws IOException {
+    try {
+      return versions.computeIfAbsent(directory, this::find);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private List<String> find(Path directory) {
+    var catalog = persisted.get();
+    var id = catalog.search(directory);
+    if (id >= 0 && catalog.lastModified(id) == lastModified(directory)) {
+      try {
+        return decode(catalog.versions(id));
+      } catch (IOException e) {
+        log.log(Level.WARNING, "could not decode persisted versions of " + directory, e);
+      }
+    }
+
+    try {
+      return list(directory);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static List<String> list(Path directory) throws IOException {
+    try (var children = Files.list(directory)) {
+      return children
+          .filter(Files::isDirectory)
+          .map(p -> p.getFileName().toString())
+          .sorted(NEWEST_FIRST)
+          .collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Adds the artifacts stored in {@code directories} to the catalog persisted in {@code file},
+   * listing only those that are not persisted yet or have been modified since. Other artifacts
+   * already persisted are kept as long as they have not been modified either.
+   *
+   * @return the number of artifacts that had to be listed.
+   */
+  public static int refresh(Path file, Collection<Path> directories) throws IOException {
+    var existing = Persisted.open(file);
+    var seen = new BitSet(existing.count);
+    var artifacts = new ArrayList<Artifact>();
+    var listed = 0;
+    for (var directory : directories) {
+      var lastModified = lastModified(directory);
+      var id = existing.search(directory);
+      if (id >= 0) {
+        seen.set(id);
+        if (existing.lastModified(id) == lastModified) {
+          artifacts.add(existing.copy(id));
+          continue;
+        }
+      }
+
+      try {
+        var path = directory.toString().getBytes(UTF_8);
+        artifacts.add(new Artifact(path, lastModified, encode(list(directory))));
+        listed++;
+      } catch (IOException e) {
+        log.log(Level.FINE, "could not list versions in " + directory, e);
+      }
+    }
+
+    // Artifacts persisted by previous runs on other roots
+    for (var id = seen.nextClearBit(0); id < existing.count; id = seen.nextClearBit(id + 1)) {
+      var path = existing.path(id);
+      if (existing.lastModified(id) == lastModified(Paths.get(new String(path, UTF_8)))) {
+        artifacts.add(existing.copy(id));
+      }
+    }
+
+    write(file, artifacts);
+    return listed;
+  }
+
+  // An artifact as it is stored: its UTF-8 directory and its encoded versions
+  private record Artifact(byte[] path, long lastModified, byte[] versions) {}
+
+  // The persisted catalog, as it is mapped
+  private static class Persisted {
+    final ByteBuffer buffer;
+    final int count;
+    final int artifacts;
+    final int data;
+
+    Persisted(ByteBuffer buffer) {
+      this.buffer = buffer;
+      this.count = buffer.getInt(8);
+      this.artifacts = buffer.getInt(12);
+      this.data = buffer.getInt(16);
+    }
+
+    static Persisted empty() {
+      return new Persisted(ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    static Persisted open(Path file) {
+      try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+          throw new IOException("invalid size " + channel.size());
+        }
+
+        var buffer =
+            channel
+                .map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+          return empty();
+        }
+
+        return new Persisted(buffer);
+      } catch (NoSuchFileException e) {
+        return empty();
+      } catch (Exception e) {
+        log.log(Level.WARNING, "ignoring unreadable version catalog " + file, e);
+        return empty();
+      }
+    }
+
+    int search(Path directory) {
+      return MappedTables.search(
+          buffer, artifacts, ARTIFACT_SIZE, count, data, directory.toString());
+    }
+
+    long lastModified(int id) {
+      return buffer.getLong(artifacts + id * ARTIFACT_SIZE + 8);
+    }
+
+    byte[] path(int id) {
+      var row = artifacts + id * ARTIFACT_SIZE;
+      return MappedTables.bytes(buffer, data + buffer.getInt(row), buffer.getInt(row + 4));
+    }
+
+    byte[] versions(int id) {
+      var row = artifacts + id * ARTIFACT_SIZE;
+      return MappedTables.bytes(buffer, data + buffer.getInt(row + 16), buffer.getInt(row + 20));
+    }
+
+    // Copied as it is stored, without being decoded
+    Artifact copy(int id) {
+      return new Artifact(path(id), lastModified(id), versions(id));
+    }
+  }
+
+  private static void write(Path file, List<Artifact> artifacts) throws IOException {
+    var sorted = new ArrayList<>(artifacts);
+    sorted.sort((a, b) -> Arrays.compareUnsigned(a.path(), b.path()));
+    var dataSize = 0L;
+    for (var artifact : sorted) {
+      dataSize += artifact.path().length + artifact.versions().length;
+    }
+
+    var data = HEADER_SIZE + sorted.size() * ARTIFACT_SIZE;
+    if (data + dataSize > Integer.MAX_VALUE) {
+      throw new IOException("version catalog is too large: " + (data + dataSize));
+    }
+
+    var catalog = ByteBuffer.allocate((int) (data + dataSize)).order(ByteOrder.LITTLE_ENDIAN);
+    catalog.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(sorted.size()).putInt(HEADER_SIZE);
+    catalog.putInt(data);
+    var offset = 0;
+    for (var artifact : sorted) {
+      catalog.putInt(offset).putInt(artifact.path().length).putLong(artifact.lastModified());
+      offset += artifact.path().length;
+      catalog.putInt(offset).putInt(artifact.versions().length);
+      offset += artifact.versions().length;
+    }
+
+    for (var artifact : sorted) {
+      catalog.put(artifact.path()).put(artifact.versions());
+    }
+
+    Utils.writeAtomically(file, catalog.array());
+  }
+
+  private static byte[] encode(List<String> versions) throws IOException {
+    var bytes = new ByteArrayOutputStream();
+    try (var out = new DataOutputStream(bytes)) {
+      out.writeInt(versions.size());
+      for (var version : versions) {
+        out.writeUTF(version);
+      }
+    }
+
+    return bytes.toByteArray();
+  }
+
+  private static List<String> decode(byte[] encoded) throws IOException {
+    var in = new DataInputStream(new ByteArrayInputStream(encoded));
+    var count = in.readInt();
+    var versions = new ArrayList<String>(count);
+    for (var i = 0; i < count; i++) {
+      versions.add(in.readUTF());
+    }
+
+    return versions;
+  }
+
+  private static long lastModified(Path directory) {
+    try {
+      return Files.getLastModifiedTime(directory).toMillis();
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+}
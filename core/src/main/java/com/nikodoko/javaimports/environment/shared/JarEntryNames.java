@@ -2,24 +2,77 @@ package com.nikodoko.javaimports.environment.shared;
 
 import com.nikodoko.javaimports.common.Import;
 import com.nikodoko.javaimports.environment.shared.classfile.BinaryNames;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
 class JarEntryNames {
   private static final String CLASS_EXTENSION = ".class";
   private static final String JAVA_9_MODULE_INFO = "module-info.class";
+  private static final String JAR_EXTENSION = ".jar";
+  private static final String VERSIONS = "META-INF/versions/";
+  // Fat jars (Spring Boot, wars) store their own classes and their dependencies in directories
+  private static final List<String> CLASSES_DIRECTORIES =
+      List.of("BOOT-INF/classes/", "WEB-INF/classes/");
+  private static final List<String> LIB_DIRECTORIES = List.of("BOOT-INF/lib/", "WEB-INF/lib/");
 
-  static String fromImport(Import i) {
-    var binaryName = BinaryNames.fromSelector(i.selector, true);
-    return binaryName + CLASS_EXTENSION;
+  // Returns the entries that can hold the class of i, in the order in which to look for them
+  static List<String> fromImport(Import i) {
+    var name = BinaryNames.fromSelector(i.selector, true) + CLASS_EXTENSION;
+    var names = new ArrayList<String>();
+    names.add(name);
+    CLASSES_DIRECTORIES.forEach(d -> names.add(d + name));
+    return names;
   }
 
   static Import toImport(String s) {
-    var selector = BinaryNames.toSelector(s.replace(CLASS_EXTENSION, ""), true);
+    var selector = BinaryNames.toSelector(stripPrefix(s).replace(CLASS_EXTENSION, ""), true);
     return new Import(selector, false);
   }
 
-  // TODO: we could be smarter and parse the module-info file to know what to import and what to
-  // ignore.
   static boolean isImportable(String s) {
-    return s.endsWith(CLASS_EXTENSION) && !s.equals(JAVA_9_MODULE_INFO);
+    return s.endsWith(CLASS_EXTENSION) && !isModuleInfo(s);
+  }
+
+  static boolean isModuleInfo(String s) {
+    return stripPrefix(s).equals(JAVA_9_MODULE_INFO);
+  }
+
+  static boolean isNestedJar(String s) {
+    return s.endsWith(JAR_EXTENSION) && LIB_DIRECTORIES.stream().anyMatch(s::startsWith);
+  }
+
+  // Returns the package of an entry in its internal form (com/example/pkg)
+  static String packageOf(String s) {
+    var name = stripPrefix(s);
+    var end = name.lastIndexOf('/');
+    return end < 0 ? "" : name.substring(0, end);
+  }
+
+  // Returns the name of the enclosing class entry of a nested class entry, if any
+  static Optional<String> enclosingOf(String s) {
+    var end = s.lastIndexOf('$');
+    if (end < 0 || end < s.lastIndexOf('/')) {
+      return Optional.empty();
+    }
+
+    return Optional.of(s.substring(0, end) + CLASS_EXTENSION);
+  }
+
+  // Returns the name of an entry relative to the root of its classpath
+  private static String stripPrefix(String s) {
+    for (var d : CLASSES_DIRECTORIES) {
+      if (s.startsWith(d)) {
+        return s.substring(d.length());
+      }
+    }
+
+    // Multi-release jars store classes for specific versions under META-INF/versions/N/
+    if (!s.startsWith(VERSIONS)) {
+      return s;
+    }
+
+    var start = s.indexOf('/', VERSIONS.length());
+    return start < 0 ? s : s.substring(start + 1);
   }
 }
@@ -0,0 +1,393 @@
+package com.nikodoko.javaimports.environment.shared;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the entries of a jar straight from its central directory, using a memory-mapped view of the
+ * file.
+ *
+ * <p>Listing entries does not inflate anything, and the content of an entry is only inflated (from
+ * the mapped file, without copying it first) when it is opened. The central directory of large jars
+ * is split into segments that are decoded concurrently.
+ *
+ * <p>Jars nested in a jar without being compressed, like the dependencies of a Spring Boot fat jar,
+ * can be read the same way, directly from the mapped outer jar.
+ */
+class JarScanner {
+  private static final int END_SIGNATURE = 0x06054b50;
+  private static final int END_SIZE = 22;
+  private static final int MAX_COMMENT_SIZE = 0xffff;
+  private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int ZIP64_LOCATOR_SIZE = 20;
+  private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+  private static final int ZIP64_EXTRA_ID = 0x0001;
+  private static final int CENTRAL_SIGNATURE = 0x02014b50;
+  private static final int CENTRAL_HEADER_SIZE = 46;
+  private static final int LOCAL_SIGNATURE = 0x04034b50;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int STORED = 0;
+  private static final int DEFLATED = 8;
+  private static final long MAX_U4 = 0xffffffffL;
+  // Below this, decoding the central directory is too fast to be worth splitting
+  private static final int PARALLEL_THRESHOLD = 8192;
+  private static final int SEGMENT_SIZE = 2048;
+  private static final Comparator<Entry> BY_NAME = Comparator.comparing(Entry::name);
+
+  record Entry(String name, int method, long compressedSize, long localHeaderOffset) {}
+
+  // Where this jar is, for error messages
+  private final String location;
+  private final ByteBuffer buffer;
+  // Sorted by name
+  private final List<Entry> entries;
+  // Inflaters are expensive to create, so we reuse them across entries like ZipFile does
+  private final Deque<Inflater> inflaters = new ArrayDeque<>();
+
+  private JarScanner(String location, ByteBuffer buffer, List<Entry> entries) {
+    this.location = location;
+    this.buffer = buffer;
+    this.entries = entries;
+  }
+
+  /** Maps the jar at {@code path} and reads its central directory. */
+  static JarScanner open(Path path) throws IOException {
+    // The mapping stays valid once the channel is closed
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new ZipException("jar is too large to be mapped: " + path);
+      }
+
+      var buffer =
+          channel
+              .map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+              .order(ByteOrder.LITTLE_ENDIAN);
+      return new JarScanner(path.toString(), buffer, readEntries(path.toString(), buffer));
+    }
+  }
+
+  /** Returns all the entries of this jar, sorted by name. */
+  List<Entry> entries() {
+    return entries;
+  }
+
+  Optional<Entry> entry(String name) {
+    var low = 0;
+    var high = entries.size() - 1;
+    while (low <= high) {
+      var mid = (low + high) >>> 1;
+      var cmp = entries.get(mid).name().compareTo(name);
+      if (cmp == 0) {
+        return Optional.of(entries.get(mid));
+      }
+
+      if (cmp < 0) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+
+    return Optional.empty();
+  }
+
+  /**
+   * Reads the jar stored in {@code entry}, which must not be compressed so that it can be read in
+   * place.
+   */
+  JarScanner nested(Entry entry) throws IOException {
+    if (entry.method() != STORED) {
+      throw new ZipException("nested jar %s in %s is compressed".formatted(entry.name(), location));
+    }
+
+    var nestedLocation = location + "!/" + entry.name();
+    var data = data(entry).order(ByteOrder.LITTLE_ENDIAN);
+    return new JarScanner(nestedLocation, data, readEntries(nestedLocation, data));
+  }
+
+  /** Opens the content of {@code entry}, inflating it as it is read if needed. */
+  InputStream open(Entry entry) throws IOException {
+    var data = data(entry);
+    switch (entry.method()) {
+      case STORED:
+        return new BufferInputStream(data);
+      case DEFLATED:
+        return new InflatingInputStream(data, inflater());
+      default:
+        throw new ZipException(
+            "unsupported compression method %d for %s".formatted(entry.method(), entry.name()));
+    }
+  }
+
+  // Returns the (possibly compressed) data of entry
+  private ByteBuffer data(Entry entry) throws IOException {
+    var offset = checkedOffset(entry.localHeaderOffset());
+    if (buffer.getInt(offset) != LOCAL_SIGNATURE) {
+      throw new ZipException("invalid local header for " + entry.name() + " in " + location);
+    }
+
+    // The name and extra field can differ from the ones of the central directory
+    var start =
+        offset
+            + LOCAL_HEADER_SIZE
+            + Short.toUnsignedInt(buffer.getShort(offset + 26))
+            + Short.toUnsignedInt(buffer.getShort(offset + 28));
+    return buffer.slice(start, checkedSize(start, entry.compressedSize()));
+  }
+
+  private synchronized Inflater inflater() {
+    var inflater = inflaters.poll();
+    return inflater == null ? new Inflater(true) : inflater;
+  }
+
+  private synchronized void release(Inflater inflater) {
+    inflater.reset();
+    inflaters.push(inflater);
+  }
+
+  private static List<Entry> readEntries(String location, ByteBuffer buffer) throws IOException {
+    var end = findEnd(location, buffer);
+    long count = Short.toUnsignedInt(buffer.getShort(end + 10));
+    long size = Integer.toUnsignedLong(buffer.getInt(end + 12));
+    long offset = Integer.toUnsignedLong(buffer.getInt(end + 16));
+    // Archives can be prefixed with arbitrary data (a launch script for instance), in which case
+    // offsets are relative to the start of the archive and not of the file
+    long base = end - size - offset;
+    var locator = end - ZIP64_LOCATOR_SIZE;
+    if (locator >= 0 && buffer.getInt(locator) == ZIP64_LOCATOR_SIGNATURE) {
+      var zip64End = (int) buffer.getLong(locator + 8);
+      if (zip64End < 0
+          || zip64End > locator - 56
+          || buffer.getInt(zip64End) != ZIP64_END_SIGNATURE) {
+        throw new ZipException("invalid zip64 end of central directory in " + location);
+      }
+
+      count = buffer.getLong(zip64End + 32);
+      size = buffer.getLong(zip64End + 40);
+      offset = buffer.getLong(zip64End + 48);
+      base = zip64End - size - offset;
+    }
+
+    var records = findRecords(location, buffer, (int) (base + offset), count);
+    var entries = new Entry[records.length];
+    var segments = (records.length + SEGMENT_SIZE - 1) / SEGMENT_SIZE;
+    var decoding = IntStream.range(0, segments);
+    if (records.length >= PARALLEL_THRESHOLD) {
+      decoding = decoding.parallel();
+    }
+
+    var archiveStart = base;
+    decoding.forEach(
+        segment -> {
+          var last = Math.min(records.length, (segment + 1) * SEGMENT_SIZE);
+          for (var i = segment * SEGMENT_SIZE; i < last; i++) {
+            entries[i] = readEntry(buffer, records[i], archiveStart);
+          }
+        });
+
+    if (entries.length >= PARALLEL_THRESHOLD) {
+      Arrays.parallelSort(entries, BY_NAME);
+    } else {
+      Arrays.sort(entries, BY_NAME);
+    }
+
+    return List.of(entries);
+  }
+
+  // Records have a variable length, so finding where each of them starts has to be done in order.
+  // This only reads their lengths, which is cheap compared to decoding them.
+  private static int[] findRecords(String location, ByteBuffer buffer, int start, long count)
+      throws IOException {
+    if (count > buffer.limit() / CENTRAL_HEADER_SIZE) {
+      throw new ZipException("invalid central directory in " + location);
+    }
+
+    var records = new int[(int) count];
+    var position = start;
+    for (var i = 0; i < records.length; i++) {
+      if (position < 0
+          || position > buffer.limit() - CENTRAL_HEADER_SIZE
+          || buffer.getInt(position) != CENTRAL_SIGNATURE) {
+        throw new ZipException("invalid central directory in " + location);
+      }
+
+      records[i] = position;
+      position +=
+          CENTRAL_HEADER_SIZE
+              + Short.toUnsignedInt(buffer.getShort(position + 28))
+              + Short.toUnsignedInt(buffer.getShort(position + 30))
+              + Short.toUnsignedInt(buffer.getShort(position + 32));
+    }
+
+    return records;
+  }
+
+  private static Entry readEntry(ByteBuffer buffer, int position, long base) {
+    var method = Short.toUnsignedInt(buffer.getShort(position + 10));
+    long compressedSize = Integer.toUnsignedLong(buffer.getInt(position + 20));
+    long uncompressedSize = Integer.toUnsignedLong(buffer.getInt(position + 24));
+    var nameLength = Short.toUnsignedInt(buffer.getShort(position + 28));
+    var extraLength = Short.toUnsignedInt(buffer.getShort(position + 30));
+    long localHeaderOffset = Integer.toUnsignedLong(buffer.getInt(position + 42));
+    var name = readName(buffer, position + CENTRAL_HEADER_SIZE, nameLength);
+
+    // Values that do not fit are stored in a zip64 extra field, in this order
+    var extra = position + CENTRAL_HEADER_SIZE + nameLength;
+    var extraEnd = extra + extraLength;
+    while (extra + 4 <= extraEnd) {
+      var id = Short.toUnsignedInt(buffer.getShort(extra));
+      var length = Short.toUnsignedInt(buffer.getShort(extra + 2));
+      if (id == ZIP64_EXTRA_ID) {
+        var field = extra + 4;
+        if (uncompressedSize == MAX_U4) {
+          field += 8;
+        }
+
+        if (compressedSize == MAX_U4) {
+          compressedSize = buffer.getLong(field);
+          field += 8;
+        }
+
+        if (localHeaderOffset == MAX_U4) {
+          localHeaderOffset = buffer.getLong(field);
+        }
+      }
+
+      extra += 4 + length;
+    }
+
+    return new Entry(name, method, compressedSize, base + localHeaderOffset);
+  }
+
+  // The end of central directory record is followed by a comment of variable length, so we have to
+  // look for it starting from the end of the file
+  private static int findEnd(String location, ByteBuffer buffer) throws IOException {
+    var last = buffer.limit() - END_SIZE;
+    var first = Math.max(0, last - MAX_COMMENT_SIZE);
+    for (var i = last; i >= first; i--) {
+      if (buffer.getInt(i) == END_SIGNATURE) {
+        return i;
+      }
+    }
+
+    throw new ZipException("could not find the end of central directory in " + location);
+  }
+
+  private static String readName(ByteBuffer buffer, int position, int length) {
+    var bytes = new byte[length];
+    buffer.get(position, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private int checkedOffset(long offset) throws ZipException {
+    if (offset < 0 || offset > buffer.limit() - LOCAL_HEADER_SIZE) {
+      throw new ZipException("invalid entry offset %d in %s".formatted(offset, location));
+    }
+
+    return (int) offset;
+  }
+
+  private int checkedSize(int start, long size) throws ZipException {
+    if (size < 0 || size > buffer.limit() - start) {
+      throw new ZipException("invalid entry size %d in %s".formatted(size, location));
+    }
+
+    return (int) size;
+  }
+
+  private static final class BufferInputStream extends InputStream {
+    private final ByteBuffer data;
+
+    BufferInputStream(ByteBuffer data) {
+      this.data = data;
+    }
+
+    @Override
+    public int read() {
+      return data.hasRemaining() ? Byte.toUnsignedInt(data.get()) : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+
+      if (!data.hasRemaining()) {
+        return -1;
+      }
+
+      var n = Math.min(len, data.remaining());
+      data.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return data.remaining();
+    }
+  }
+
+  private final class InflatingInputStream extends InputStream {
+    private final Inflater inflater;
+    private final byte[] single = new byte[1];
+    private boolean closed = false;
+
+    InflatingInputStream(ByteBuffer data, Inflater inflater) {
+      this.inflater = inflater;
+      inflater.setInput(data);
+    }
+
+    @Override
+    public int read() throws IOException {
+      return read(single, 0, 1) == -1 ? -1 : Byte.toUnsignedInt(single[0]);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+
+      try {
+        while (true) {
+          var n = inflater.inflate(b, off, len);
+          if (n > 0) {
+            return n;
+          }
+
+          // All the compressed data is in the input already, so needing more means we are done
+          if (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()) {
+            return -1;
+          }
+        }
+      } catch (DataFormatException e) {
+        throw new ZipException(e.getMessage());
+      }
+    }
+
+    @Override
+    public void close() {
+      if (!closed) {
+        closed = true;
+        release(inflater);
+      }
+    }
+  }
+}
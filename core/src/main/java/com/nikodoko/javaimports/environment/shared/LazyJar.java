@@ -8,14 +8,17 @@ import com.nikodoko.javaimports.common.Utils;
 import com.nikodoko.javaimports.common.telemetry.Logs;
 import com.nikodoko.javaimports.common.telemetry.Tag;
 import com.nikodoko.javaimports.common.telemetry.Traces;
-import com.nikodoko.javaimports.environment.shared.classfile.BinaryNames;
 import com.nikodoko.javaimports.environment.shared.classfile.Classfile;
 import io.opentracing.Span;
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -24,22 +27,57 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 public class LazyJar implements JavaJar {
   private static final Tag.Key<Path> JAR_PATH = Tag.withKey("jar_path");
   private static final Logger log = Logs.getLogger(LazyJar.class.getName());
-  private static final String CLASS_EXTENSION = ".class";
+  // Below this, reading classes is too fast to be worth splitting
+  private static final int PARALLEL_THRESHOLD = 8192;
 
   private final Path path;
   private final Map<Import, Optional<ClassEntity>> classes = new ConcurrentHashMap<>();
   private volatile Set<Import> importables = null;
+  // Kept once read, so that loading classes does not decode the central directories again
+  private Scanned scanned = null;
+
+  // A jar whose central directory has been read, along with the jars nested in it
+  private record Scanned(JarScanner jar, List<Scanned> nested) {
+    static Scanned open(Path path) throws IOException {
+      return of(JarScanner.open(path));
+    }
+
+    // Nested jars are read in place, without being extracted
+    private static Scanned of(JarScanner jar) {
+      var nested = new ArrayList<Scanned>();
+      for (var entry : jar.entries()) {
+        if (!JarEntryNames.isNestedJar(entry.name())) {
+          continue;
+        }
+
+        try {
+          nested.add(of(jar.nested(entry)));
+        } catch (Exception e) {
+          log.log(Level.FINE, "could not read nested jar " + entry.name(), e);
+        }
+      }
+
+      return new Scanned(jar, nested);
+    }
+  }
 
   public LazyJar(Path path) {
     this.path = path;
   }
 
+  /**
+   * Creates a {@code LazyJar} whose importables are already known (from a previous run for
+   * instance), so that the jar is only ever opened to load classes.
+   */
+  public LazyJar(Path path, Collection<Import> importables) {
+    this.path = path;
+    this.importables = Set.copyOf(importables);
+  }
+
   public Path path() {
     return path;
   }
@@ -96,12 +134,8 @@ public class LazyJar implements JavaJar {
   private synchronized void initImportables(Span span) {
     if (importables != null) return;
 
-    try (var zip = new ZipFile(path.toFile())) {
-      importables =
-          zip.stream()
-              .filter(e -> JarEntryNames.isImportable(e.getName()))
-              .map(e -> JarEntryNames.toImport(e.getName()))
-              .collect(Collectors.toSet());
+    try {
+      importables = Set.copyOf(findImportables(scanned()));
     } catch (Exception e) {
       log.log(Level.WARNING, "could not load importables for " + path, e);
       Traces.addThrowable(span, e);
@@ -109,9 +143,95 @@ public class LazyJar implements JavaJar {
     }
   }
 
-  private static String toPath(Import i) {
-    var binaryName = BinaryNames.fromSelector(i.selector, true);
-    return binaryName + CLASS_EXTENSION;
+  /**
+   * Reads the importables of the jar at {@code path}, failing rather than returning nothing if it
+   * cannot be read, so that callers persisting the result can tell a broken jar from an empty one.
+   */
+  public static Set<Import> readImportables(Path path) throws IOException {
+    return Set.copyOf(findImportables(Scanned.open(path)));
+  }
+
+  private synchronized Scanned scanned() throws IOException {
+    if (scanned == null) {
+      scanned = Scanned.open(path);
+    }
+
+    return scanned;
+  }
+
+  private static Set<Import> findImportables(Scanned scanned) {
+    var jar = scanned.jar();
+    var exported = readExportedPackages(jar);
+    var importablesByEntry = new ConcurrentHashMap<String, Set<Import>>();
+    var classes =
+        jar.entries().stream()
+            .filter(e -> JarEntryNames.isImportable(e.name()))
+            .filter(
+                e -> exported.map(p -> p.contains(JarEntryNames.packageOf(e.name()))).orElse(true));
+    // Reading classes is what takes time for large jars. We use the common pool rather than our
+    // executors, as jars are already loaded from those and could end up waiting for each other.
+    if (jar.entries().size() >= PARALLEL_THRESHOLD) {
+      classes = classes.parallel();
+    }
+
+    classes.forEach(e -> importablesByEntry.put(e.name(), readImports(jar, e)));
+    var importables =
+        importablesByEntry.entrySet().stream()
+            .filter(e -> isAccessible(e.getKey(), importablesByEntry))
+            .flatMap(e -> e.getValue().stream())
+            .collect(Collectors.toCollection(HashSet::new));
+    for (var nested : scanned.nested()) {
+      importables.addAll(findImportables(nested));
+    }
+
+    return importables;
+  }
+
+  // A public class nested in a class that cannot be imported cannot be imported either
+  private static boolean isAccessible(String entry, Map<String, Set<Import>> importablesByEntry) {
+    var enclosing = JarEntryNames.enclosingOf(entry);
+    while (enclosing.isPresent()) {
+      var importables = importablesByEntry.get(enclosing.get());
+      if (importables != null && importables.isEmpty()) {
+        return false;
+      }
+
+      enclosing = JarEntryNames.enclosingOf(enclosing.get());
+    }
+
+    return true;
+  }
+
+  // Modular jars only make the packages they export accessible, so we ignore the others. If the
+  // module declaration is only present for some versions, we assume it applies to all of them.
+  private static Optional<Set<String>> readExportedPackages(JarScanner jar) {
+    var moduleInfo =
+        jar.entries().stream()
+            .filter(e -> JarEntryNames.isModuleInfo(e.name()))
+            .min(Comparator.comparing(e -> e.name().length()));
+    if (moduleInfo.isEmpty()) {
+      return Optional.empty();
+    }
+
+    try (var dis = open(jar, moduleInfo.get())) {
+      return Classfile.readExportedPackages(dis);
+    } catch (Exception e) {
+      log.log(Level.FINE, "could not read exported packages of " + moduleInfo.get().name(), e);
+      return Optional.empty();
+    }
+  }
+
+  // Static members are imported as often as classes (think assertThat or checkNotNull), so we
+  // want them to be available without having to load the class first. Classes that are not public
+  // are skipped altogether.
+  private static Set<Import> readImports(JarScanner jar, JarScanner.Entry entry) {
+    try (var dis = open(jar, entry)) {
+      return Classfile.readImports(dis);
+    } catch (Exception e) {
+      // Still make the class available, as we would have without reading it
+      log.log(Level.FINE, "could not read " + entry.name(), e);
+      return Set.of(JarEntryNames.toImport(entry.name()));
+    }
   }
 
   @Override
@@ -124,18 +244,41 @@ public class LazyJar implements JavaJar {
   }
 
   private Optional<ClassEntity> loadClass(Import i) {
-    try (var zip = new ZipFile(path.toFile())) {
-      var entry = zip.getEntry(toPath(i));
-      try (var dis = open(zip, entry)) {
-        return Optional.of(Classfile.readFrom(dis));
+    try {
+      var loaded = loadClass(scanned(), i);
+      if (loaded.isEmpty()) {
+        log.log(Level.WARNING, "could not find class " + i + " in " + path);
       }
+
+      return loaded;
     } catch (Exception e) {
       log.log(Level.WARNING, "could not load class " + i, e);
       return Optional.empty();
     }
   }
 
-  private static DataInputStream open(ZipFile file, ZipEntry entry) throws IOException {
-    return new DataInputStream(new BufferedInputStream(file.getInputStream(entry), 8192));
+  private static Optional<ClassEntity> loadClass(Scanned scanned, Import i) throws IOException {
+    var jar = scanned.jar();
+    for (var name : JarEntryNames.fromImport(i)) {
+      var entry = jar.entry(name);
+      if (entry.isPresent()) {
+        try (var dis = open(jar, entry.get())) {
+          return Optional.of(Classfile.readFrom(dis));
+        }
+      }
+    }
+
+    for (var nested : scanned.nested()) {
+      var loaded = loadClass(nested, i);
+      if (loaded.isPresent()) {
+        return loaded;
+      }
+    }
+
+    return Optional.empty();
+  }
+
+  private static DataInputStream open(JarScanner jar, JarScanner.Entry entry) throws IOException {
+    return new DataInputStream(new BufferedInputStream(jar.open(entry), 8192));
   }
 }
@@ -2,16 +2,17 @@ package com.nikodoko.javaimports.environment.shared;
 
 import com.nikodoko.javaimports.common.ClassEntity;
 import com.nikodoko.javaimports.common.ClassProvider;
+import com.nikodoko.javaimports.common.Deadline;
 import com.nikodoko.javaimports.common.Identifier;
 import com.nikodoko.javaimports.common.Import;
 import com.nikodoko.javaimports.common.ImportProvider;
 import com.nikodoko.javaimports.common.Selector;
-import com.nikodoko.javaimports.common.Utils;
 import com.nikodoko.javaimports.common.telemetry.Logs;
 import com.nikodoko.javaimports.common.telemetry.Traces;
 import io.opentracing.Span;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -19,8 +20,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.function.Function;
 import java.util.logging.Logger;
@@ -31,15 +34,44 @@ public class LazyJars implements ImportProvider, ClassProvider {
   private static Logger log = Logs.getLogger(LazyJars.class.getName());
 
   private final Executor executor;
+  private final Deadline deadline;
   private final Map<Dependency.Kind, List<LazyJar>> depsByKind;
   private final Map<Set<String>, LazyJar> depsByPath;
+  private final Optional<SymbolTable> symbols;
 
   // Cache
   private final Map<Identifier, Set<Import>> availableImports = new HashMap<>();
   private final Set<LazyJar> loaded = new HashSet<>();
+  // Loaded jars whose imports are looked up in the symbol table rather than copied to the heap
+  private final BitSet indexed = new BitSet();
+  private final Map<LazyJar, Integer> indexedIds = new HashMap<>();
+  // Jars being loaded in the background, whose imports are not available yet
+  private final Map<LazyJar, CompletableFuture<Loaded>> prefetched = new ConcurrentHashMap<>();
 
   public LazyJars(Executor executor, Collection<? extends Dependency> deps) {
+    this(executor, deps, Deadline.none());
+  }
+
+  /**
+   * Jars that are not loaded yet when {@code deadline} is reached are not loaded at all, and their
+   * imports are not available.
+   */
+  public LazyJars(Executor executor, Collection<? extends Dependency> deps, Deadline deadline) {
+    this(executor, deps, deadline, Optional.empty());
+  }
+
+  /**
+   * The imports of jars that are up to date in {@code symbols} are looked up there instead of being
+   * read from the jars.
+   */
+  public LazyJars(
+      Executor executor,
+      Collection<? extends Dependency> deps,
+      Deadline deadline,
+      Optional<SymbolTable> symbols) {
     this.executor = executor;
+    this.symbols = symbols;
+    this.deadline = deadline;
     this.depsByKind =
         deps.stream()
             .collect(
@@ -62,14 +94,48 @@ public class LazyJars implements ImportProvider, ClassProvider {
     load(depsByKind.getOrDefault(kind, List.of()));
   }
 
+  /**
+   * Starts loading all jars of a given {@code kind} in the background. Their imports will only be
+   * available after a call to {@link #load(Dependency.Kind)}.
+   */
+  public void prefetch(Dependency.Kind kind) {
+    var span = Traces.createSpan("LazyJars.prefetch");
+    var tasks = new ArrayList<CompletableFuture<Loaded>>();
+    for (var jar : depsByKind.getOrDefault(kind, List.of())) {
+      tasks.add(
+          prefetched.computeIfAbsent(
+              jar, j -> CompletableFuture.supplyAsync(() -> load(j, span), executor)));
+    }
+
+    // The tasks run under this span, so it only ends with them (cancelled or not)
+    CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new))
+        .whenComplete((__, t) -> span.finish());
+  }
+
+  /** Abandons the jars being loaded in the background that were not needed yet. */
+  public void cancelPrefetch() {
+    prefetched.values().forEach(f -> f.cancel(false));
+  }
+
   @Override
   public Collection<Import> findImports(Identifier i) {
-    return availableImports.getOrDefault(i, Set.of());
+    var found = availableImports.getOrDefault(i, Set.of());
+    if (indexed.isEmpty()) {
+      return found;
+    }
+
+    var all = new ArrayList<Import>(found);
+    all.addAll(symbols.get().findImports(i, indexed));
+    return all;
   }
 
   @Override
   public Optional<ClassEntity> findClass(Import i) {
     for (var jar : loaded) {
+      if (!provides(jar, i)) {
+        continue;
+      }
+
       var maybeClass = jar.findClass(i);
       if (maybeClass.isPresent()) {
         return maybeClass;
@@ -92,6 +158,10 @@ public class LazyJars implements ImportProvider, ClassProvider {
     for (var score : scores) {
       load(candidates.get(score));
       for (var jar : loaded) {
+        if (!provides(jar, i)) {
+          continue;
+        }
+
         var maybeClass = jar.findClass(i);
         if (maybeClass.isPresent()) {
           return maybeClass;
@@ -102,6 +172,18 @@ public class LazyJars implements ImportProvider, ClassProvider {
     return Optional.empty();
   }
 
+  // Reading a jar is what the symbol table saves us, so indexed jars are only read if they have i
+  private boolean provides(LazyJar jar, Import i) {
+    var id = indexedIds.get(jar);
+    if (id == null) {
+      return true;
+    }
+
+    var ids = new BitSet();
+    ids.set(id);
+    return symbols.get().findImports(i.selector.identifier(), ids).contains(i);
+  }
+
   private Function<Set<String>, Integer> similarityScore(Selector s) {
     var words = s.identifiers().stream().map(Identifier::toString).collect(Collectors.toSet());
     return elts -> {
@@ -115,7 +197,7 @@ public class LazyJars implements ImportProvider, ClassProvider {
 
   private void load(Collection<LazyJar> jars) {
     var toLoad = jars.stream().filter(jar -> !loaded.contains(jar)).toList();
-    if (toLoad.isEmpty()) {
+    if (toLoad.isEmpty() || deadline.isReached()) {
       return;
     }
 
@@ -133,29 +215,45 @@ public class LazyJars implements ImportProvider, ClassProvider {
       return;
     }
 
-    var tasks =
-        toLoad.stream()
-            .map(jar -> CompletableFuture.supplyAsync(() -> load(jar, span), executor))
-            .toList();
-
-    Utils.sequence(tasks)
-        .thenAccept(
-            results -> {
-              for (var result : results) {
-                for (var importable : result) {
-                  availableImports
-                      .computeIfAbsent(importable.selector.identifier(), __ -> new HashSet<>())
-                      .add(importable);
-                }
-              }
-            })
-        .join();
-    loaded.addAll(toLoad);
+    var tasks = toLoad.stream().map(jar -> prefetchedOrLoad(jar, span)).toList();
+
+    for (var result : deadline.awaitAll(tasks)) {
+      result
+          .indexedAs()
+          .ifPresent(
+              id -> {
+                indexed.set(id);
+                indexedIds.put(result.jar(), id);
+              });
+      for (var importable : result.imports()) {
+        availableImports
+            .computeIfAbsent(importable.selector.identifier(), __ -> new HashSet<>())
+            .add(importable);
+      }
+
+      loaded.add(result.jar());
+    }
+  }
+
+  private CompletableFuture<Loaded> prefetchedOrLoad(LazyJar jar, Span span) {
+    var task = prefetched.remove(jar);
+    if (task != null && !task.isCancelled()) {
+      return task;
+    }
+
+    return CompletableFuture.supplyAsync(() -> load(jar, span), executor);
   }
 
-  private Collection<Import> load(LazyJar jar, Span span) {
+  private record Loaded(LazyJar jar, Collection<Import> imports, OptionalInt indexedAs) {}
+
+  private Loaded load(LazyJar jar, Span span) {
     try (var __ = Traces.activate(span)) {
-      return jar.findAllImports();
+      var id = symbols.map(s -> s.find(jar.path())).orElse(OptionalInt.empty());
+      if (id.isPresent()) {
+        return new Loaded(jar, List.of(), id);
+      }
+
+      return new Loaded(jar, jar.findAllImports(), OptionalInt.empty());
     }
   }
 }
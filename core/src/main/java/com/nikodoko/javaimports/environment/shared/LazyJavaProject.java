@@ -1,20 +1,25 @@
 package com.nikodoko.javaimports.environment.shared;
 
+import com.nikodoko.javaimports.common.Deadline;
 import com.nikodoko.javaimports.common.JavaSourceFile;
 import com.nikodoko.javaimports.common.Selector;
-import com.nikodoko.javaimports.common.Utils;
 import com.nikodoko.javaimports.common.telemetry.Traces;
 import io.opentracing.Span;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 public class LazyJavaProject {
   private final Map<Dependency.Kind, List<LazyParsedFile>> allFiles;
+  // Both guarded by this, as prefetching happens in the background while more files are made
+  // available or the prefetch is cancelled
   private final Set<LazyParsedFile> available = new HashSet<>();
+  private final List<CompletableFuture<?>> prefetched = new ArrayList<>();
 
   public LazyJavaProject(Selector refPkg, List<? extends Dependency> srcs) {
     this(
@@ -35,29 +40,61 @@ public class LazyJavaProject {
     makeAvailable(Dependency.Kind.TRANSITIVE);
   }
 
-  private void makeAvailable(Dependency.Kind kind) {
+  private synchronized void makeAvailable(Dependency.Kind kind) {
     available.addAll(allFiles.getOrDefault(kind, List.of()));
   }
 
+  private synchronized List<LazyParsedFile> available() {
+    return List.copyOf(available);
+  }
+
   public List<? extends JavaSourceFile> filesInPackage(Selector pkg) {
-    return available.stream().filter(f -> f.pkg().equals(pkg)).toList();
+    return available().stream().filter(f -> f.pkg().equals(pkg)).toList();
   }
 
   public List<? extends JavaSourceFile> allFiles() {
-    return available.stream().toList();
+    return available();
+  }
+
+  /**
+   * Starts parsing all available files in the background. What they contain will only be exposed by
+   * a later call to {@link #eagerlyParse}, or when they are parsed on demand.
+   */
+  public synchronized void prefetch(Executor e) {
+    for (var file : available) {
+      prefetched.add(file.prefetch(e));
+    }
+  }
+
+  /** Abandons the files being parsed in the background that were not needed yet. */
+  public synchronized void cancelPrefetch() {
+    prefetched.forEach(f -> f.cancel(false));
+    prefetched.clear();
   }
 
   public void eagerlyParse(Executor e) {
+    eagerlyParse(e, Deadline.none());
+  }
+
+  /**
+   * Parses all available files, giving up when {@code deadline} is reached. Files that were not
+   * parsed by then will still be parsed on demand.
+   */
+  public void eagerlyParse(Executor e, Deadline deadline) {
+    if (deadline.isReached()) {
+      return;
+    }
+
     var span = Traces.createSpan("LazyJavaProject.eagerlyParse");
     try (var __ = Traces.activate(span)) {
-      eagerlyParseInstrumented(span, e);
+      eagerlyParseInstrumented(span, e, deadline);
     } finally {
       span.finish();
     }
   }
 
-  private void eagerlyParseInstrumented(Span span, Executor e) {
-    var tasks = available.stream().map(f -> f.parseAsync(e)).toList();
-    Utils.sequence(tasks).join();
+  private void eagerlyParseInstrumented(Span span, Executor e, Deadline deadline) {
+    var tasks = available().stream().map(f -> f.parseAsync(e)).toList();
+    deadline.awaitAll(tasks);
   }
 }
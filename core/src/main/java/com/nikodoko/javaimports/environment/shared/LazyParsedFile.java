@@ -20,6 +20,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.logging.Level;
@@ -29,6 +30,14 @@ import java.util.regex.Pattern;
 public interface LazyParsedFile extends JavaSourceFile {
   CompletableFuture<Void> parseAsync(Executor e);
 
+  /**
+   * Starts parsing this file in the background, without exposing the result until it is parsed with
+   * {@link #parseAsync} or on demand. Cancelling the returned task abandons it.
+   */
+  default CompletableFuture<?> prefetch(Executor e) {
+    return CompletableFuture.completedFuture(null);
+  }
+
   @FunctionalInterface
   interface Factory {
     LazyParsedFile build(Selector refPkg, Path filename);
@@ -46,6 +55,7 @@ public interface LazyParsedFile extends JavaSourceFile {
     private final Import inferredImport;
 
     private volatile Optional<ParsedFile> parsed;
+    private volatile CompletableFuture<Optional<ParsedFile>> prefetched;
 
     private Impl(Selector refPkg, Path filename) {
       this.refPkg = refPkg;
@@ -93,6 +103,15 @@ public interface LazyParsedFile extends JavaSourceFile {
       return parsed.map(p -> p.pkg()).orElse(Selector.of(""));
     }
 
+    @Override
+    public Optional<Collection<Import>> declaredImports() {
+      if (parsed == null) {
+        return Optional.empty();
+      }
+
+      return Optional.of(parsed.map(p -> p.imports().values()).orElse(List.of()));
+    }
+
     @Override
     public Collection<Import> findImports(Identifier i) {
       if (parsed == null) {
@@ -130,22 +149,54 @@ public interface LazyParsedFile extends JavaSourceFile {
         return CompletableFuture.completedFuture(null);
       }
 
+      var p = prefetched;
+      if (p != null) {
+        // Do not block a thread of e waiting for the prefetch, which could itself be waiting for a
+        // thread of e
+        return p.handle((__, t) -> null).thenRun(this::parse);
+      }
+
       return CompletableFuture.runAsync(this::parse, e);
     }
 
+    @Override
+    public synchronized CompletableFuture<?> prefetch(Executor e) {
+      if (parsed != null) {
+        return CompletableFuture.completedFuture(null);
+      }
+
+      if (prefetched == null || prefetched.isCancelled()) {
+        prefetched = CompletableFuture.supplyAsync(this::parseQuietly, e);
+      }
+
+      return prefetched;
+    }
+
     private synchronized void parse() {
-      synchronized (this) {
-        if (parsed != null) {
-          return;
-        }
+      if (parsed != null) {
+        return;
+      }
 
+      var p = prefetched;
+      if (p != null && !p.isCancelled()) {
         try {
-          parsed = parse(refPkg, filename);
-        } catch (IOException | ImporterException e) {
-          log.log(Level.WARNING, "Could not parse file %s".formatted(filename), e);
-          parsed = Optional.empty();
+          parsed = p.join();
+          return;
+        } catch (CancellationException e) {
+          // Parse it ourselves
         }
       }
+
+      parsed = parseQuietly();
+    }
+
+    private Optional<ParsedFile> parseQuietly() {
+      try {
+        return parse(refPkg, filename);
+      } catch (IOException | ImporterException e) {
+        log.log(Level.WARNING, "Could not parse file %s".formatted(filename), e);
+        return Optional.empty();
+      }
     }
 
     private static Optional<ParsedFile> parse(Selector refPkg, Path filename)
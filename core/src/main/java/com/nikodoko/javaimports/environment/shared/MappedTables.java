@@ -0,0 +1,74 @@
+package com.nikodoko.javaimports.environment.shared;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Lookups in tables stored in a memory-mapped buffer, whose rows start with a reference (offset and
+ * length, as two ints) to a UTF-8 string stored in the same buffer and are sorted by that string.
+ */
+public final class MappedTables {
+  private MappedTables() {}
+
+  /**
+   * Returns the index of the row of {@code table} referencing {@code key}, or -1 if there is none.
+   * String offsets are relative to {@code strings}.
+   */
+  public static int search(
+      ByteBuffer buffer, int table, int rowSize, int rowCount, int strings, String key) {
+    // UTF-8 preserves the order of code points, so comparing bytes is enough. Most keys are ASCII,
+    // and can be compared to the mapped bytes without being encoded first.
+    var encoded = isAscii(key) ? null : key.getBytes(UTF_8);
+    var low = 0;
+    var high = rowCount - 1;
+    while (low <= high) {
+      var mid = (low + high) >>> 1;
+      var row = table + mid * rowSize;
+      var cmp = compare(buffer, strings + buffer.getInt(row), buffer.getInt(row + 4), key, encoded);
+      if (cmp == 0) {
+        return mid;
+      }
+
+      if (cmp < 0) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+
+    return -1;
+  }
+
+  /** Copies the {@code length} bytes found at {@code offset} in {@code buffer}. */
+  public static byte[] bytes(ByteBuffer buffer, int offset, int length) {
+    var bytes = new byte[length];
+    buffer.get(offset, bytes);
+    return bytes;
+  }
+
+  private static int compare(
+      ByteBuffer buffer, int offset, int length, String key, byte[] encoded) {
+    var keyLength = encoded == null ? key.length() : encoded.length;
+    var n = Math.min(length, keyLength);
+    for (var i = 0; i < n; i++) {
+      var a = Byte.toUnsignedInt(buffer.get(offset + i));
+      var b = encoded == null ? key.charAt(i) : Byte.toUnsignedInt(encoded[i]);
+      if (a != b) {
+        return a - b;
+      }
+    }
+
+    return length - keyLength;
+  }
+
+  private static boolean isAscii(String s) {
+    for (var i = 0; i < s.length(); i++) {
+      if (s.charAt(i) >= 0x80) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+}
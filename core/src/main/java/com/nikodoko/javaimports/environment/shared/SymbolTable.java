@@ -0,0 +1,346 @@
+package com.nikodoko.javaimports.environment.shared;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.nikodoko.javaimports.common.Identifier;
+import com.nikodoko.javaimports.common.Import;
+import com.nikodoko.javaimports.common.ImportProvider;
+import com.nikodoko.javaimports.common.Selector;
+import com.nikodoko.javaimports.common.Utils;
+import com.nikodoko.javaimports.common.telemetry.Logs;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A read-only index of the imports provided by a set of jars, shared by all javaimports processes
+ * on a machine.
+ *
+ * <p>The table is a single file that is memory-mapped rather than loaded, so that it lives outside
+ * of the heap and in the page cache of the OS, shared between processes. It contains:
+ *
+ * <ul>
+ *   <li>a pool of UTF-8 strings, referenced by offset and length;
+ *   <li>the indexed jars, sorted by path, along with their last modification time;
+ *   <li>the imports of each jar, contiguous;
+ *   <li>the identifiers of all imports, sorted;
+ *   <li>for each identifier, the list of imports that end with it.
+ * </ul>
+ *
+ * Looking up an identifier is a binary search over the mapped identifiers, and only the imports
+ * found are allocated.
+ */
+public class SymbolTable implements ImportProvider {
+  private static final Logger log = Logs.getLogger(SymbolTable.class.getName());
+  private static final String FILE_NAME = "symbols.table";
+  private static final int MAGIC = 0x4a495354;
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_SIZE = 40;
+  private static final int JAR_SIZE = 24;
+  private static final int IMPORT_SIZE = 16;
+  private static final int IDENTIFIER_SIZE = 16;
+  private static final int POSTING_SIZE = 4;
+  private static final int STATIC = 1;
+
+  /** The imports provided by a jar, as of {@code lastModified}. */
+  public record Jar(Path path, long lastModified, Collection<Import> importables) {}
+
+  private final ByteBuffer buffer;
+  private final int jarCount;
+  private final int identifierCount;
+  private final int jars;
+  private final int imports;
+  private final int identifiers;
+  private final int postings;
+  private final int strings;
+
+  private SymbolTable(ByteBuffer buffer) {
+    this.buffer = buffer;
+    this.jarCount = buffer.getInt(8);
+    this.identifierCount = buffer.getInt(16);
+    this.jars = buffer.getInt(20);
+    this.imports = buffer.getInt(24);
+    this.identifiers = buffer.getInt(28);
+    this.postings = buffer.getInt(32);
+    this.strings = buffer.getInt(36);
+  }
+
+  /** Returns where the symbol table is stored in {@code cacheDirectory}. */
+  public static Path location(Path cacheDirectory) {
+    return cacheDirectory.resolve(FILE_NAME);
+  }
+
+  /** Maps the symbol table stored in {@code file}, if it exists and can be read. */
+  public static Optional<SymbolTable> open(Path file) {
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("invalid size " + channel.size());
+      }
+
+      var buffer =
+          channel
+              .map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+              .order(ByteOrder.LITTLE_ENDIAN);
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+        return Optional.empty();
+      }
+
+      return Optional.of(new SymbolTable(buffer));
+    } catch (NoSuchFileException e) {
+      return Optional.empty();
+    } catch (Exception e) {
+      log.log(Level.WARNING, "ignoring unreadable symbol table " + file, e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Returns the id of {@code jar} in this table, if it is indexed and has not been modified since.
+   */
+  public OptionalInt find(Path jar) {
+    var id = MappedTables.search(buffer, jars, JAR_SIZE, jarCount, strings, jar.toString());
+    if (id < 0) {
+      return OptionalInt.empty();
+    }
+
+    var row = jars + id * JAR_SIZE;
+    try {
+      if (Files.getLastModifiedTime(jar).toMillis() != buffer.getLong(row + 8)) {
+        return OptionalInt.empty();
+      }
+    } catch (IOException e) {
+      return OptionalInt.empty();
+    }
+
+    return OptionalInt.of(id);
+  }
+
+  /** Returns the number of imports provided by the jar with id {@code jar}. */
+  public int importCount(int jar) {
+    return buffer.getInt(jars + jar * JAR_SIZE + 20);
+  }
+
+  /** Returns the ids of the jars of this table that have not been modified since indexed. */
+  public BitSet unmodified() {
+    var ids = new BitSet(jarCount);
+    for (var id = 0; id < jarCount; id++) {
+      var row = jars + id * JAR_SIZE;
+      var path = Path.of(string(buffer.getInt(row), buffer.getInt(row + 4)));
+      try {
+        if (Files.getLastModifiedTime(path).toMillis() == buffer.getLong(row + 8)) {
+          ids.set(id);
+        }
+      } catch (IOException e) {
+        // Removed since, so not kept
+      }
+    }
+
+    return ids;
+  }
+
+  @Override
+  public Collection<Import> findImports(Identifier i) {
+    return findImports(i, null);
+  }
+
+  /** Returns the imports ending with {@code i} among the jars whose id is set in {@code ids}. */
+  public Collection<Import> findImports(Identifier i, BitSet ids) {
+    var id =
+        MappedTables.search(
+            buffer, identifiers, IDENTIFIER_SIZE, identifierCount, strings, i.toString());
+    if (id < 0) {
+      return List.of();
+    }
+
+    var row = identifiers + id * IDENTIFIER_SIZE;
+    var first = buffer.getInt(row + 8);
+    var count = buffer.getInt(row + 12);
+    var found = new ArrayList<Import>();
+    for (var p = first; p < first + count; p++) {
+      var imprt = buffer.getInt(postings + p * POSTING_SIZE);
+      if (ids == null || ids.get(buffer.getInt(imports + imprt * IMPORT_SIZE + 8))) {
+        found.add(importAt(imprt));
+      }
+    }
+
+    return found;
+  }
+
+  private Import importAt(int i) {
+    var row = imports + i * IMPORT_SIZE;
+    var selector = string(buffer.getInt(row), buffer.getInt(row + 4));
+    var isStatic = (buffer.getInt(row + 12) & STATIC) != 0;
+    return new Import(Selector.of(Arrays.asList(selector.split("\\."))), isStatic);
+  }
+
+  private String string(int offset, int length) {
+    return new String(MappedTables.bytes(buffer, strings + offset, length), UTF_8);
+  }
+
+  // The imports of the jar with id jar, as they are stored
+  private Encoded encoded(int jar) {
+    var row = jars + jar * JAR_SIZE;
+    var first = buffer.getInt(row + 16);
+    var selectors = new ArrayList<byte[]>(importCount(jar));
+    var statics = new BitSet();
+    for (var i = 0; i < importCount(jar); i++) {
+      var importRow = imports + (first + i) * IMPORT_SIZE;
+      selectors.add(
+          MappedTables.bytes(
+              buffer, strings + buffer.getInt(importRow), buffer.getInt(importRow + 4)));
+      statics.set(i, (buffer.getInt(importRow + 12) & STATIC) != 0);
+    }
+
+    return new Encoded(buffer.getLong(row + 8), selectors, statics);
+  }
+
+  /**
+   * Writes a symbol table for {@code jars} to {@code file}. Processes using the previous table keep
+   * reading it until they open the new one.
+   */
+  public static void write(Path file, Collection<Jar> jars) throws IOException {
+    write(file, jars, Optional.empty(), new BitSet());
+  }
+
+  /**
+   * Same as {@link #write(Path, Collection)}, but also keeps the jars of {@code previous} whose id
+   * is set in {@code kept}. Their imports are copied as they are stored, without being decoded.
+   */
+  public static void write(
+      Path file, Collection<Jar> jars, Optional<SymbolTable> previous, BitSet kept)
+      throws IOException {
+    var pool = new StringPool();
+    var sorted = new TreeMap<byte[], Encoded>(Arrays::compareUnsigned);
+    previous.ifPresent(
+        t ->
+            kept.stream()
+                .forEach(
+                    id -> {
+                      var row = t.jars + id * JAR_SIZE;
+                      var path = t.string(t.buffer.getInt(row), t.buffer.getInt(row + 4));
+                      sorted.put(path.getBytes(UTF_8), t.encoded(id));
+                    }));
+    // Jars read again replace those kept
+    for (var jar : jars) {
+      sorted.put(jar.path().toString().getBytes(UTF_8), encode(jar));
+    }
+
+    var jarRows = ByteBuffer.allocate(sorted.size() * JAR_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    var importRows = new ArrayList<int[]>();
+    var postingsByIdentifier = new TreeMap<byte[], List<Integer>>(Arrays::compareUnsigned);
+    var id = 0;
+    for (var e : sorted.entrySet()) {
+      var jar = e.getValue();
+      var selectors = jar.selectors();
+      jarRows.putInt(pool.add(e.getKey())).putInt(e.getKey().length);
+      jarRows.putLong(jar.lastModified()).putInt(importRows.size()).putInt(selectors.size());
+      for (var i = 0; i < selectors.size(); i++) {
+        var selector = selectors.get(i);
+        postingsByIdentifier
+            .computeIfAbsent(identifierOf(selector), __ -> new ArrayList<>())
+            .add(importRows.size());
+        importRows.add(
+            new int[] {pool.add(selector), selector.length, id, jar.statics().get(i) ? STATIC : 0});
+      }
+
+      id++;
+    }
+
+    var postingCount = postingsByIdentifier.values().stream().mapToInt(List::size).sum();
+    var identifierRows =
+        ByteBuffer.allocate(postingsByIdentifier.size() * IDENTIFIER_SIZE)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    var postingRows =
+        ByteBuffer.allocate(postingCount * POSTING_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    for (var e : postingsByIdentifier.entrySet()) {
+      identifierRows.putInt(pool.add(e.getKey())).putInt(e.getKey().length);
+      identifierRows.putInt(postingRows.position() / POSTING_SIZE).putInt(e.getValue().size());
+      e.getValue().forEach(postingRows::putInt);
+    }
+
+    var jarsOffset = HEADER_SIZE;
+    var importsOffset = jarsOffset + jarRows.capacity();
+    var identifiersOffset = importsOffset + importRows.size() * IMPORT_SIZE;
+    var postingsOffset = identifiersOffset + identifierRows.capacity();
+    var stringsOffset = postingsOffset + postingRows.capacity();
+    var strings = pool.bytes();
+    var table = ByteBuffer.allocate(stringsOffset + strings.length).order(ByteOrder.LITTLE_ENDIAN);
+    table.putInt(MAGIC).putInt(FORMAT_VERSION);
+    table.putInt(sorted.size()).putInt(importRows.size()).putInt(postingsByIdentifier.size());
+    table.putInt(jarsOffset).putInt(importsOffset).putInt(identifiersOffset);
+    table.putInt(postingsOffset).putInt(stringsOffset);
+    table.put(jarRows.flip());
+    for (var row : importRows) {
+      for (var field : row) {
+        table.putInt(field);
+      }
+    }
+
+    table.put(identifierRows.flip()).put(postingRows.flip()).put(strings);
+
+    Utils.writeAtomically(file, table.array());
+  }
+
+  // The imports of a jar as they are stored: UTF-8 selectors, and which of them are static
+  private record Encoded(long lastModified, List<byte[]> selectors, BitSet statics) {}
+
+  private static Encoded encode(Jar jar) {
+    var selectors = new ArrayList<byte[]>();
+    var statics = new BitSet();
+    for (var i : new LinkedHashSet<>(jar.importables())) {
+      statics.set(selectors.size(), i.isStatic);
+      selectors.add(i.selector.toString().getBytes(UTF_8));
+    }
+
+    return new Encoded(jar.lastModified(), selectors, statics);
+  }
+
+  // The identifier of a selector is its last part, and '.' is never part of a multibyte character
+  private static byte[] identifierOf(byte[] selector) {
+    var start = selector.length;
+    while (start > 0 && selector[start - 1] != '.') {
+      start--;
+    }
+
+    return Arrays.copyOfRange(selector, start, selector.length);
+  }
+
+  // Stores each distinct string once
+  private static class StringPool {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final Map<String, Integer> offsets = new HashMap<>();
+
+    int add(byte[] s) {
+      return offsets.computeIfAbsent(
+          new String(s, UTF_8),
+          __ -> {
+            var offset = bytes.size();
+            bytes.writeBytes(s);
+            return offset;
+          });
+    }
+
+    byte[] bytes() {
+      return bytes.toByteArray();
+    }
+  }
+}
@@ -1,8 +1,11 @@
 package com.nikodoko.javaimports.environment.shared.classfile;
 
-record AccessFlags(Visibility visibility) {
+record AccessFlags(Visibility visibility, boolean isStatic, boolean isSynthetic) {
+  private static final short ACC_STATIC = 0x0008;
+  private static final short ACC_SYNTHETIC = 0x1000;
+
   static AccessFlags from(short raw) {
     var visibility = Visibility.from(raw);
-    return new AccessFlags(visibility);
+    return new AccessFlags(visibility, (raw & ACC_STATIC) != 0, (raw & ACC_SYNTHETIC) != 0);
   }
 }
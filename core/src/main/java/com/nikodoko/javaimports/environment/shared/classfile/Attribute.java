@@ -8,6 +8,7 @@ import java.util.List;
 interface Attribute {
   static class Type {
     static final String INNER_CLASSES = "InnerClasses";
+    static final String MODULE = "Module";
   }
 
   int nameIdx();
@@ -49,6 +50,50 @@ interface Attribute {
     }
   }
 
+  record Export(int packageIdx, int flags, List<Integer> toModuleIdxs) {
+    static Export readFrom(DataInputStream dis) throws IOException {
+      var packageIdx = dis.readUnsignedShort();
+      var flags = dis.readUnsignedShort();
+      var toCount = dis.readUnsignedShort();
+      var toModuleIdxs = new ArrayList<Integer>(toCount);
+      for (var i = 0; i < toCount; i++) {
+        toModuleIdxs.add(dis.readUnsignedShort());
+      }
+
+      return new Export(packageIdx, flags, toModuleIdxs);
+    }
+
+    // A qualified export only exposes the package to the listed modules
+    boolean isQualified() {
+      return !toModuleIdxs.isEmpty();
+    }
+  }
+
+  // We only care about exports, and skip everything else
+  record Module(int nameIdx, int length, List<Export> exports) implements Attribute {
+    static Module readFrom(Untyped base, DataInputStream dis) throws IOException {
+      // Module name, flags and version
+      dis.skipBytes(6);
+      var requiresCount = dis.readUnsignedShort();
+      // Each requirement is a module, flags and a version
+      dis.skipBytes(6 * requiresCount);
+      var read = 8 + 6 * requiresCount;
+
+      var exportsCount = dis.readUnsignedShort();
+      read += 2;
+      var exports = new ArrayList<Export>(exportsCount);
+      for (var i = 0; i < exportsCount; i++) {
+        var export = Export.readFrom(dis);
+        exports.add(export);
+        read += 6 + 2 * export.toModuleIdxs().size();
+      }
+
+      // Opens, uses and provides
+      dis.skipBytes(base.length() - read);
+      return new Module(base.nameIdx(), base.length(), exports);
+    }
+  }
+
   /**
    * Read attributes without caring about what type they are, as this requires knowing the constant
    * pool.
@@ -66,6 +111,8 @@ interface Attribute {
     switch (cp.getUtf8Constant(untyped.nameIdx())) {
       case Type.INNER_CLASSES:
         return InnerClasses.readFrom(untyped, dis);
+      case Type.MODULE:
+        return Module.readFrom(untyped, dis);
       default:
         // We don't care about the details of the attribute
         dis.skipBytes(untyped.length());
@@ -7,6 +7,8 @@ import com.nikodoko.javaimports.common.Selector;
 import com.nikodoko.javaimports.common.Superclass;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -68,6 +70,10 @@ public class Classfile {
         .map(c -> new Identifier(cp.getUtf8Constant(c.innerClassNameIdx())));
   }
 
+  private static boolean isPublicStatic(AccessFlags flags) {
+    return flags.visibility() == Visibility.PUBLIC && flags.isStatic() && !flags.isSynthetic();
+  }
+
   private static boolean isPublicOrProtected(AccessFlags flags) {
     return flags.visibility() == Visibility.PUBLIC || flags.visibility() == Visibility.PROTECTED;
   }
@@ -98,6 +104,72 @@ public class Classfile {
         .build();
   }
 
+  /**
+   * Reads what a class makes importable from anywhere: the class itself if it is public, along with
+   * its public static fields and methods. Returns nothing for other classes.
+   */
+  public static Set<Import> readImports(DataInputStream s) throws IOException {
+    assertClassFile(s);
+    skipVersion(s);
+    var cp = ConstantPool.readFrom(s);
+    var af = AccessFlags.from(s.readShort());
+    // Anonymous and local classes are never public
+    if (af.visibility() != Visibility.PUBLIC || af.isSynthetic()) {
+      return Set.of();
+    }
+
+    var thisClass = readClass(s, cp);
+    // Parent
+    s.readUnsignedShort();
+
+    // Interfaces
+    var il = s.readUnsignedShort();
+    for (var i = 0; i < il; i++) {
+      s.readUnsignedShort();
+    }
+
+    var fields = Fields.readFrom(s);
+    var methods = Fields.readFrom(s);
+    var statics =
+        Stream.concat(
+                StreamSupport.stream(fields.spliterator(), false),
+                StreamSupport.stream(methods.spliterator(), false))
+            .filter(f -> isPublicStatic(f.accessFlags()))
+            .map(f -> thisClass.combine(Selector.of(cp.getUtf8Constant(f.nameIdx()))))
+            .map(selector -> new Import(selector, true));
+
+    return Stream.concat(Stream.of(new Import(thisClass, false)), statics)
+        .collect(Collectors.toSet());
+  }
+
+  /**
+   * Reads the packages that a {@code module-info} class exports to all modules, in their internal
+   * form ({@code com/example/pkg}), or nothing if it is not a module declaration.
+   */
+  public static Optional<Set<String>> readExportedPackages(DataInputStream s) throws IOException {
+    assertClassFile(s);
+    skipVersion(s);
+    var cp = ConstantPool.readFrom(s);
+    // Access flags, this class and parent
+    s.skipBytes(6);
+    // A module declaration has no interfaces, fields or methods, but we still read their counts
+    s.skipBytes(2);
+    Fields.readFrom(s);
+    Fields.readFrom(s);
+
+    var attributes = Attributes.readFrom(s, cp);
+    return StreamSupport.stream(attributes.spliterator(), false)
+        .filter(Attribute.Module.class::isInstance)
+        .map(a -> (Attribute.Module) a)
+        .findFirst()
+        .map(
+            m ->
+                m.exports().stream()
+                    .filter(e -> !e.isQualified())
+                    .map(e -> cp.getPackageName(e.packageIdx()))
+                    .collect(Collectors.toSet()));
+  }
+
   private static void assertClassFile(DataInputStream s) throws IOException {
     var m = s.readInt();
     if (m != MAGIC) {
@@ -51,6 +51,15 @@ record ConstantPool(Constant[] constants) implements Iterable<Constant> {
     return ((Constant.Utf8Info) c).name();
   }
 
+  String getPackageName(int idx) {
+    var c = constants[idx];
+    if (c.tag() != Constant.Tag.PACKAGE) {
+      throw new IllegalArgumentException("constant index %d is not PACKAGE".formatted(idx));
+    }
+
+    return getUtf8Constant(((Constant.PackageInfo) c).nameIdx());
+  }
+
   String getClassName(int idx) {
     var c = constants[idx];
     if (c.tag() != Constant.Tag.CLASS) {
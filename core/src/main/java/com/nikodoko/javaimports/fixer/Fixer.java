@@ -13,9 +13,11 @@ import com.nikodoko.javaimports.fixer.candidates.Candidate;
 import com.nikodoko.javaimports.fixer.candidates.CandidateFinder;
 import com.nikodoko.javaimports.fixer.candidates.CandidateSelectionStrategy;
 import com.nikodoko.javaimports.fixer.candidates.Candidates;
+import com.nikodoko.javaimports.fixer.candidates.ImportFrequencies;
 import com.nikodoko.javaimports.fixer.internal.Loader;
 import com.nikodoko.javaimports.parser.ParsedFile;
 import com.nikodoko.javaimports.stdlib.StdlibProvider;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -34,6 +36,8 @@ public class Fixer {
   private final ClassLibrary library;
   private final ParentClassFinder parents;
   private final CandidateSelectionStrategy strategy;
+  private final ImportFrequencies frequencies;
+  private final List<Environment> environments = new ArrayList<>();
   private static Logger log = Logs.getLogger(Fixer.class.getName());
 
   private Loader loader;
@@ -43,7 +47,8 @@ public class Fixer {
     this.candidates = new CandidateFinder();
     this.library = new ClassLibrary();
     this.loader = Loader.of(file);
-    this.strategy = new BasicCandidateSelectionStrategy(file.pkg());
+    this.frequencies = new ImportFrequencies();
+    this.strategy = new BasicCandidateSelectionStrategy(file.pkg(), frequencies);
     this.parents = new ParentClassFinder(candidates, library, strategy);
     // Needed because some other files in the project might extend a class defined in the current
     // file
@@ -75,6 +80,8 @@ public class Fixer {
             .map(f -> (JavaSourceFile) f)
             .toList();
 
+    // Files of other packages still tell us which imports are commonly used in this project
+    frequencies.addAll(siblings);
     loader.addSiblings(siblingsOfSamePackage);
     siblingsOfSamePackage.stream().forEach(f -> candidates.add(Candidate.Source.SIBLING, f));
     siblingsOfSamePackage.stream().forEach(f -> library.add(f));
@@ -90,6 +97,7 @@ public class Fixer {
     loader.addEnvironment(environment);
     candidates.add(Candidate.Source.EXTERNAL, environment);
     library.add(environment);
+    environments.add(environment);
   }
 
   private Result loadAndTryToFix(boolean lastTry) {
@@ -129,6 +137,8 @@ public class Fixer {
   }
 
   private Result fixInstrumented(boolean lastTry) {
+    // More project files can have been parsed since the last time
+    environments.forEach(e -> frequencies.addAll(e.files()));
     var allParentsFound = true;
     var fixes = new HashSet<Import>();
     var result = parents.findAllParents(file.orphans());
@@ -170,8 +180,10 @@ public class Fixer {
   private Set<Import> findFixesInstrumented(
       Set<Identifier> unresolved, Collection<Import> current) {
     var selectors = unresolved.stream().map(Selector::of).collect(Collectors.toList());
-    var candidates = selectors.stream().map(this.candidates::find).reduce(Candidates::merge).get();
-    var best = new BasicCandidateSelectionStrategy(file.pkg()).selectBest(candidates);
+    var candidates =
+        Candidates.merge(
+            selectors.stream().map(this.candidates::find).collect(Collectors.toList()));
+    var best = strategy.selectBest(candidates);
 
     return selectors.stream()
         .map(best::forSelector)
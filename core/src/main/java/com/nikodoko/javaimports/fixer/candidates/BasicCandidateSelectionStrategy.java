@@ -5,14 +5,25 @@ import com.nikodoko.javaimports.fixer.candidates.filters.CandidateFilters;
 
 public class BasicCandidateSelectionStrategy implements CandidateSelectionStrategy {
   private final Selector pkg;
+  private final ImportFrequencies frequencies;
 
   public BasicCandidateSelectionStrategy(Selector pkg) {
+    this(pkg, new ImportFrequencies());
+  }
+
+  /**
+   * Prefers the candidates that the project already imports the most, according to {@code
+   * frequencies}.
+   */
+  public BasicCandidateSelectionStrategy(Selector pkg, ImportFrequencies frequencies) {
     this.pkg = pkg;
+    this.frequencies = frequencies;
   }
 
   @Override
   public BestCandidates selectBest(Candidates candidates) {
     var filtered = bestSource(candidates);
+    filtered = mostFrequentlyImported(filtered);
     filtered = mostCommonScope(filtered);
     filtered = sourceSpecificRules(filtered);
     return takeFirst(filtered);
@@ -22,6 +33,10 @@ public class BasicCandidateSelectionStrategy implements CandidateSelectionStrate
     return CandidateFilters.mostRelevantSource().filter(candidates);
   }
 
+  private Candidates mostFrequentlyImported(Candidates candidates) {
+    return CandidateFilters.mostFrequentlyImported(frequencies).filter(candidates);
+  }
+
   private Candidates mostCommonScope(Candidates candidates) {
     return CandidateFilters.mostCommonScope().filter(candidates);
   }
@@ -3,21 +3,46 @@ package com.nikodoko.javaimports.fixer.candidates;
 import com.google.common.base.MoreObjects;
 import com.nikodoko.javaimports.common.Selector;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-
+import java.util.function.ToIntFunction;
+
+/**
+ * Candidates for a set of selectors.
+ *
+ * <p>Candidates are stored in a table with one row per candidate, where rows of a same selector are
+ * contiguous. Narrowing candidates down only clears rows from a bitset and shares the table, so
+ * that selecting the best candidates takes time linear with the total number of candidates.
+ */
 public class Candidates {
-  public static final Candidates EMPTY = new Candidates(Map.of());
+  public static final Candidates EMPTY = new Candidates(Table.of(List.of(), List.of()));
+
+  private final Table table;
+  // The rows of table that are part of this instance
+  private final BitSet live;
 
-  private final Map<Selector, List<Candidate>> candidates;
+  private Candidates(Table table) {
+    this(table, allRows(table));
+  }
+
+  private Candidates(Table table, BitSet live) {
+    this.table = table;
+    this.live = live;
+  }
 
-  private Candidates(Map<Selector, List<Candidate>> candidates) {
-    this.candidates = candidates;
+  private static BitSet allRows(Table table) {
+    var rows = new BitSet(table.size());
+    rows.set(0, table.size());
+    return rows;
   }
 
   /**
@@ -25,7 +50,19 @@ public class Candidates {
    * present.
    */
   public List<Candidate> getFor(Selector selector) {
-    return candidates.getOrDefault(selector, new ArrayList<>());
+    var candidates = new ArrayList<Candidate>();
+    var id = table.selectorIds.get(selector);
+    if (id == null) {
+      return candidates;
+    }
+
+    var end = table.firstRows[id + 1];
+    for (int row = live.nextSetBit(table.firstRows[id]); row >= 0 && row < end; ) {
+      candidates.add(table.candidates[row]);
+      row = live.nextSetBit(row + 1);
+    }
+
+    return candidates;
   }
 
   /**
@@ -33,12 +70,44 @@ public class Candidates {
    * Candidate}.
    */
   public Set<Selector> selectors() {
-    return candidates.keySet();
+    var selectors = new LinkedHashSet<Selector>();
+    for (int row = live.nextSetBit(0); row >= 0; ) {
+      var id = table.selectorOf[row];
+      selectors.add(table.selectors.get(id));
+      // Skip to the next selector
+      row = live.nextSetBit(table.firstRows[id + 1]);
+    }
+
+    return selectors;
   }
 
   /** Returns true if this {@code Candidates} does not contain any candidates. */
   public boolean isEmpty() {
-    return candidates.isEmpty();
+    return live.isEmpty();
+  }
+
+  /**
+   * Returns the candidates with the highest {@code score} among the candidates for their selector,
+   * keeping all of them in case of a tie.
+   */
+  public Candidates keepHighest(ToIntFunction<Candidate> score) {
+    var scores = new int[table.size()];
+    var highest = new int[table.selectors.size()];
+    Arrays.fill(highest, Integer.MIN_VALUE);
+    for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+      scores[row] = score.applyAsInt(table.candidates[row]);
+      var id = table.selectorOf[row];
+      highest[id] = Math.max(highest[id], scores[row]);
+    }
+
+    var kept = new BitSet(table.size());
+    for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+      if (scores[row] == highest[table.selectorOf[row]]) {
+        kept.set(row);
+      }
+    }
+
+    return new Candidates(table, kept);
   }
 
   public static Builder forSelector(Selector s) {
@@ -50,10 +119,31 @@ public class Candidates {
    * and {@code b}.
    */
   public static Candidates merge(Candidates a, Candidates b) {
-    var combined = new HashMap<Selector, List<Candidate>>();
-    combined.putAll(a.candidates);
-    combined.putAll(b.candidates);
-    return new Candidates(combined);
+    return merge(List.of(a, b));
+  }
+
+  /**
+   * Creates a new instance of {@code Candidates} containing all the candidates stored in {@code
+   * all}. If several contain candidates for the same selector, the last one wins.
+   */
+  public static Candidates merge(Collection<Candidates> all) {
+    var bySelector = new LinkedHashMap<Selector, List<Candidate>>();
+    for (var candidates : all) {
+      for (var s : candidates.selectors()) {
+        bySelector.put(s, candidates.getFor(s));
+      }
+    }
+
+    return new Candidates(Table.of(bySelector.keySet(), bySelector.values()));
+  }
+
+  private Map<Selector, List<Candidate>> asMap() {
+    var candidates = new HashMap<Selector, List<Candidate>>();
+    for (var s : selectors()) {
+      candidates.put(s, getFor(s));
+    }
+
+    return candidates;
   }
 
   @Override
@@ -67,17 +157,70 @@ public class Candidates {
     }
 
     var that = (Candidates) o;
-    return Objects.equals(this.candidates, that.candidates);
+    return Objects.equals(this.asMap(), that.asMap());
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(candidates);
+    return Objects.hash(asMap());
   }
 
   @Override
   public String toString() {
-    return MoreObjects.toStringHelper(this).add("candidates", candidates).toString();
+    return MoreObjects.toStringHelper(this).add("candidates", asMap()).toString();
+  }
+
+  // The columns of a set of candidates: the candidate (import and source) and the id of its
+  // selector for each row, as well as where rows of each selector start
+  private static final class Table {
+    final List<Selector> selectors;
+    final Map<Selector, Integer> selectorIds;
+    // The rows of selector i are between firstRows[i] (inclusive) and firstRows[i + 1]
+    final int[] firstRows;
+    final Candidate[] candidates;
+    final int[] selectorOf;
+
+    private Table(
+        List<Selector> selectors,
+        Map<Selector, Integer> selectorIds,
+        int[] firstRows,
+        Candidate[] candidates,
+        int[] selectorOf) {
+      this.selectors = selectors;
+      this.selectorIds = selectorIds;
+      this.firstRows = firstRows;
+      this.candidates = candidates;
+      this.selectorOf = selectorOf;
+    }
+
+    static Table of(Collection<Selector> selectors, Collection<List<Candidate>> candidates) {
+      var size = candidates.stream().mapToInt(List::size).sum();
+      var selectorIds = new HashMap<Selector, Integer>();
+      var firstRows = new int[selectors.size() + 1];
+      var rows = new Candidate[size];
+      var selectorOf = new int[size];
+      var id = 0;
+      var row = 0;
+      var it = candidates.iterator();
+      for (var s : selectors) {
+        selectorIds.put(s, id);
+        firstRows[id] = row;
+        for (var c : it.next()) {
+          rows[row] = c;
+          selectorOf[row] = id;
+          row++;
+        }
+
+        id++;
+      }
+
+      firstRows[id] = row;
+      return new Table(List.copyOf(selectors), selectorIds, firstRows, rows, selectorOf);
+    }
+
+    int size() {
+      return candidates.length;
+    }
   }
 
   public static class Builder {
@@ -99,7 +242,7 @@ public class Candidates {
     }
 
     public Candidates build() {
-      return new Candidates(Map.of(selector, candidates));
+      return new Candidates(Table.of(List.of(selector), List.of(candidates)));
     }
   }
 }
@@ -0,0 +1,47 @@
+package com.nikodoko.javaimports.fixer.candidates;
+
+import com.nikodoko.javaimports.common.Import;
+import com.nikodoko.javaimports.common.JavaSourceFile;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Counts how many files of a project declare each import, so that the imports a project already
+ * uses can be preferred.
+ *
+ * <p>Files are counted once, as soon as they are parsed, so this can be updated with the same files
+ * as they get parsed over time.
+ */
+public class ImportFrequencies {
+  private final Map<Import, Integer> counts = new HashMap<>();
+  private final Set<JavaSourceFile> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  /** Counts the imports of the {@code files} that are parsed and were not counted yet. */
+  public void addAll(Iterable<? extends JavaSourceFile> files) {
+    for (var file : files) {
+      if (counted.contains(file)) {
+        continue;
+      }
+
+      var imports = file.declaredImports();
+      if (imports.isEmpty()) {
+        // Not parsed yet
+        continue;
+      }
+
+      for (var i : imports.get()) {
+        counts.merge(i, 1, Integer::sum);
+      }
+
+      counted.add(file);
+    }
+  }
+
+  /** Returns the number of counted files declaring {@code i}. */
+  public int of(Import i) {
+    return counts.getOrDefault(i, 0);
+  }
+}
@@ -1,53 +1,42 @@
 package com.nikodoko.javaimports.fixer.candidates.filters;
 
 import com.nikodoko.javaimports.common.Selector;
-import com.nikodoko.javaimports.fixer.candidates.Candidate;
 import com.nikodoko.javaimports.fixer.candidates.Candidates;
-import java.util.List;
+import com.nikodoko.javaimports.fixer.candidates.ImportFrequencies;
 
 public class CandidateFilters {
-  private static CandidateFilter NOOP = candidates -> candidates;
-
   public static CandidateFilter mostRelevantSource() {
     return new SourceCandidateFilter();
   }
 
+  public static CandidateFilter mostFrequentlyImported(ImportFrequencies frequencies) {
+    return candidates -> candidates.keepHighest(c -> frequencies.of(c.i));
+  }
+
   public static CandidateFilter mostCommonScope() {
     return new CommonScopeCandidateFilter();
   }
 
   // Pkg is the package for which we are trying to find imports
   public static CandidateFilter sourceSpecificRules(Selector pkg) {
-    return candidates ->
-        candidates.selectors().stream()
-            .map(s -> filterCandidatesOfSameSource(pkg, s, candidates.getFor(s)))
-            .reduce(Candidates::merge)
-            .orElse(Candidates.EMPTY);
-  }
-
-  private static Candidates filterCandidatesOfSameSource(
-      Selector pkg, Selector s, List<Candidate> candidates) {
-    if (candidates.isEmpty()) {
-      throw new IllegalArgumentException("Why do we have a selector with no candidates?");
-    }
-
-    var source = candidates.get(0).s;
-    if (candidates.stream().filter(c -> c.s != source).count() != 0) {
-      throw new IllegalArgumentException(
-          String.format("Candidates for selector %s have different sources"));
-    }
-
-    return rulesForSource(source, pkg).filter(Candidates.forSelector(s).add(candidates).build());
+    // Each of these only narrows down candidates of its own source, so they can be chained as long
+    // as all the candidates of a selector come from the same source
+    var stdlib = new StdlibCandidateFilter();
+    var external = new ExternalCandidateFilter(pkg);
+    return candidates -> {
+      checkSameSource(candidates);
+      return external.filter(stdlib.filter(candidates));
+    };
   }
 
-  private static CandidateFilter rulesForSource(Candidate.Source source, Selector pkg) {
-    switch (source) {
-      case STDLIB:
-        return new StdlibCandidateFilter();
-      case EXTERNAL:
-        return new ExternalCandidateFilter(pkg);
-      default:
-        return NOOP;
+  private static void checkSameSource(Candidates candidates) {
+    for (var s : candidates.selectors()) {
+      var forSelector = candidates.getFor(s);
+      var source = forSelector.get(0).s;
+      if (forSelector.stream().anyMatch(c -> c.s != source)) {
+        throw new IllegalArgumentException(
+            String.format("Candidates for selector %s have different sources", s));
+      }
     }
   }
 }
@@ -4,11 +4,9 @@ import com.nikodoko.javaimports.common.Selector;
 import com.nikodoko.javaimports.fixer.candidates.Candidate;
 import com.nikodoko.javaimports.fixer.candidates.Candidates;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 class CommonScopeCandidateFilter implements CandidateFilter {
   private static class ScopeCounter {
@@ -34,41 +32,22 @@ class CommonScopeCandidateFilter implements CandidateFilter {
     extractNonAmbiguous(candidates);
     buildScopeCounter();
 
-    return candidates.selectors().stream()
-        .map(s -> mostRelevantforSelector(s, candidates.getFor(s)))
-        .reduce(Candidates::merge)
-        .orElse(Candidates.EMPTY);
+    return candidates.keepHighest(c -> scopeCounter.get(scope(c)));
   }
 
   private void extractNonAmbiguous(Candidates candidates) {
-    var nonAmbiguous =
-        candidates.selectors().stream()
-            .filter(s -> candidates.getFor(s).size() == 1)
-            .flatMap(s -> candidates.getFor(s).stream())
-            .collect(Collectors.toList());
-    selected.addAll(nonAmbiguous);
+    for (var s : candidates.selectors()) {
+      var forSelector = candidates.getFor(s);
+      if (forSelector.size() == 1) {
+        selected.addAll(forSelector);
+      }
+    }
   }
 
   private void buildScopeCounter() {
     scopeCounter.add(selected);
   }
 
-  private Candidates mostRelevantforSelector(Selector selector, List<Candidate> candidates) {
-    var topCount = highestCount(candidates);
-    var best =
-        candidates.stream()
-            .filter(c -> scopeCounter.get(scope(c)) == topCount)
-            .collect(Collectors.toList());
-    return Candidates.forSelector(selector).add(best).build();
-  }
-
-  private int highestCount(List<Candidate> candidates) {
-    var top =
-        Collections.max(
-            candidates, (c1, c2) -> scopeCounter.get(scope(c1)) - scopeCounter.get(scope(c2)));
-    return scopeCounter.get(scope(top));
-  }
-
   private static Selector scope(Candidate candidate) {
     return candidate.i.selector.scope();
   }
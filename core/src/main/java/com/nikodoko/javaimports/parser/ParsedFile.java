@@ -85,6 +85,11 @@ public record ParsedFile(
     return Stream.concat(classes.reachable().values().stream(), classes.unreachable().stream());
   }
 
+  @Override
+  public Optional<Collection<Import>> declaredImports() {
+    return Optional.of(imports.values());
+  }
+
   @Override
   public Collection<Import> findImports(Identifier i) {
     var importables =
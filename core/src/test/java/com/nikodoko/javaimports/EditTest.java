@@ -0,0 +1,30 @@
+package com.nikodoko.javaimports;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.StringWriter;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class EditTest {
+  static final String SOURCE = "package a;\nimport b.B;\nimport b.B;\nclass A {}\n";
+
+  @Test
+  void itShouldApplyEditsRelativeToTheOriginalSource() {
+    var edits = List.of(Edit.insertion(10, "import c.C;"), Edit.deletion(23, 34));
+
+    var got = Edit.apply(SOURCE, edits);
+
+    assertThat(got).isEqualTo("package a;import c.C;\nimport b.B;\n\nclass A {}\n");
+  }
+
+  @Test
+  void itShouldWriteTheSameThingItApplies() throws Exception {
+    var edits = List.of(Edit.insertion(0, "// header\n"), Edit.deletion(23, 34));
+    var out = new StringWriter();
+
+    Edit.write(SOURCE, edits, out);
+
+    assertThat(out.toString()).isEqualTo(Edit.apply(SOURCE, edits));
+  }
+}
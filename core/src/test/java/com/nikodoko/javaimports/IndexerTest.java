@@ -0,0 +1,45 @@
+package com.nikodoko.javaimports;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.nikodoko.javaimports.environment.shared.SymbolTable;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class IndexerTest {
+  static final URL jarURL =
+      IndexerTest.class.getResource(
+          "/.m2/repository/com/mycompany/app/another-dependency/3.0/another-dependency-3.0.jar");
+
+  @TempDir Path cache;
+  @TempDir Path jars;
+  Indexer indexer;
+
+  @BeforeEach
+  void setup() {
+    indexer = new Indexer(Options.builder().cacheDirectory(cache).build());
+  }
+
+  @Test
+  void itShouldNotIndexJarsThatCannotBeRead() throws Exception {
+    var valid = Files.copy(Paths.get(jarURL.toURI()), jars.resolve("valid.jar"));
+    var corrupt = Files.write(jars.resolve("corrupt.jar"), new byte[] {'P', 'K', 3, 4, 0});
+
+    var first = indexer.index(List.of(jars));
+    var second = indexer.index(List.of(jars));
+    var table = SymbolTable.open(SymbolTable.location(cache)).get();
+
+    assertThat(first.jarsRead()).isEqualTo(2);
+    // Still read again, as it was not indexed
+    assertThat(second.jarsRead()).isEqualTo(1);
+    assertThat(table.find(valid)).isPresent();
+    assertThat(table.find(corrupt)).isEmpty();
+  }
+}
@@ -0,0 +1,45 @@
+package com.nikodoko.javaimports;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class OptionsTest {
+  // A process task (e.g. a bazel query) waits for another one (e.g. draining its stderr), which
+  // must run concurrently even when no threads are requested
+  @ParameterizedTest
+  @ValueSource(ints = {0, 1})
+  void itShouldRunProcessTasksConcurrently(int threads) throws Exception {
+    var executor = Options.builder().numThreads(threads).build().processExecutor();
+    var parsed = new CountDownLatch(1);
+    var drained = new CountDownLatch(1);
+
+    var query =
+        CompletableFuture.supplyAsync(
+            () -> {
+              executor.execute(
+                  () -> {
+                    if (await(parsed)) {
+                      drained.countDown();
+                    }
+                  });
+              parsed.countDown();
+              return await(drained);
+            },
+            executor);
+
+    assertThat(query.get(20, TimeUnit.SECONDS)).isTrue();
+  }
+
+  static boolean await(CountDownLatch latch) {
+    try {
+      return latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package com.nikodoko.javaimports.common;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+public class DeadlineTest {
+  @Test
+  void itShouldWaitForTasksUntilReached() {
+    var deadline = Deadline.none();
+    var done = CompletableFuture.completedFuture("done");
+    var pending = new CompletableFuture<String>();
+
+    assertThat(deadline.await(done)).hasValue("done");
+
+    deadline.cancel();
+
+    assertThat(deadline.await(pending)).isEmpty();
+    assertThat(pending.isCancelled()).isTrue();
+  }
+
+  @Test
+  void itShouldOnlyReturnCompletedTasks() {
+    var deadline = Deadline.after(Duration.ofMillis(10));
+    var pending = new CompletableFuture<String>();
+
+    var got = deadline.awaitAll(List.of(CompletableFuture.completedFuture("done"), pending));
+
+    assertThat(got).containsExactly("done");
+    assertThat(deadline.isReached()).isTrue();
+    assertThat(pending.isCancelled()).isTrue();
+  }
+
+  @Test
+  void itShouldRunActionsWhenReached() {
+    var deadline = Deadline.none();
+    var before = new AtomicBoolean();
+    deadline.onReached(() -> before.set(true));
+
+    assertThat(before.get()).isFalse();
+
+    deadline.cancel();
+    var after = new AtomicBoolean();
+    deadline.onReached(() -> after.set(true));
+
+    assertThat(before.get()).isTrue();
+    assertThat(after.get()).isTrue();
+  }
+}
@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 import net.jqwik.api.Arbitrary;
+import net.jqwik.api.Assume;
 import net.jqwik.api.Example;
 import net.jqwik.api.ForAll;
 import net.jqwik.api.Property;
@@ -151,6 +152,18 @@ public class SelectorTest {
     assertThat(got).isEqualTo(sibling.equals(aSelector) ? 0 : 2);
   }
 
+  @Property
+  void distanceGoesThroughTheCommonPrefix(
+      @ForAll Selector common, @ForAll("identifier") String a, @ForAll("identifier") String b) {
+    Assume.that(!a.equals(b));
+    var fromA = common.combine(Selector.of(a, "x"));
+    var toB = common.combine(Selector.of(b));
+    var distance = Selector.Distance.from(fromA);
+    var got = distance.to(toB);
+
+    assertThat(got).isEqualTo(3);
+  }
+
   @Example
   void distanceToSelectorThatDoesNotShareACommonRootIsEqualToSumOfSizes(
       @ForAll Selector aSelector, @ForAll Selector anotherSelector) {
@@ -0,0 +1,25 @@
+package com.nikodoko.javaimports.common;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class UtilsTest {
+  @TempDir Path tmp;
+
+  @Test
+  void itShouldWriteAtomically() throws Exception {
+    var file = tmp.resolve("cache").resolve("a.index");
+
+    Utils.writeAtomically(file, new byte[] {1, 2});
+    Utils.writeAtomically(file, new byte[] {3});
+
+    assertThat(Files.readAllBytes(file)).isEqualTo(new byte[] {3});
+    try (var files = Files.list(file.getParent())) {
+      assertThat(files.toList()).containsExactly(file);
+    }
+  }
+}
@@ -3,6 +3,7 @@ package com.nikodoko.javaimports.environment.bazel;
 import static com.google.common.truth.Truth.assertThat;
 import static com.nikodoko.javaimports.common.CommonTestUtil.aSelector;
 import static com.nikodoko.javaimports.common.CommonTestUtil.anImport;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 
 import com.nikodoko.javaimports.Options;
 import com.nikodoko.javaimports.common.Identifier;
@@ -14,6 +15,7 @@ import com.nikodoko.packagetest.Repository;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.List;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -170,6 +172,30 @@ public class BazelEnvironmentTest {
     assertThat(env.increasePrecision()).isFalse();
   }
 
+  @Test
+  void itShouldStartTheQueryWithASingleThread() throws Exception {
+    // In debug mode, the query's stderr is drained by another task, which must not wait for the
+    // query to release the only thread
+    var options = Options.builder().debug(true).numThreads(1).build();
+
+    var got =
+        assertTimeoutPreemptively(
+            Duration.ofMinutes(2),
+            () -> {
+              var env =
+                  new BazelEnvironment(
+                      project.root(),
+                      project.root().resolve("mainmodule"),
+                      true,
+                      project.file("main.module", "Main.java").get(),
+                      aSelector("main.module"),
+                      options);
+              return env.findImports(new Identifier("A"));
+            });
+
+    assertThat(got).containsExactly(anImport("main.module.A"), anImport("secondary.module.A"));
+  }
+
   @Test
   void itShouldGuessClassesFirst() throws Exception {
     // At first, for files:
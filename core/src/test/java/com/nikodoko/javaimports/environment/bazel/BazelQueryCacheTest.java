@@ -0,0 +1,87 @@
+package com.nikodoko.javaimports.environment.bazel;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.nikodoko.javaimports.environment.shared.Dependency;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class BazelQueryCacheTest {
+  Path workspace;
+  Path target;
+  BazelQueryCache cache;
+
+  @BeforeEach
+  void setup() throws Exception {
+    var tmp = Files.createTempDirectory("");
+    workspace = Files.createDirectory(tmp.resolve("workspace"));
+    target = Files.createDirectories(workspace.resolve("app"));
+    Files.writeString(workspace.resolve("MODULE.bazel"), "module(name = \"app\")");
+    Files.writeString(target.resolve("BUILD"), "java_library(name = \"app\")");
+    cache = new BazelQueryCache(tmp.resolve("cache"), workspace, target, "deps(//app)", true);
+  }
+
+  @Test
+  void itShouldBeEmptyWhenNothingWasWritten() throws Exception {
+    assertThat(cache.read()).isEmpty();
+  }
+
+  @Test
+  void itShouldReadFreshResults() throws Exception {
+    var results = someResults();
+
+    cache.write(results);
+    var got = cache.read();
+
+    assertThat(got).hasValue(new BazelQueryCache.Entry(results, false));
+  }
+
+  @Test
+  void itShouldBeStaleWhenATargetBuildFileChanges() throws Exception {
+    var results = someResults();
+
+    cache.write(results);
+    Files.writeString(target.resolve("BUILD"), "java_library(name = \"other\")");
+    var got = cache.read();
+
+    assertThat(got).hasValue(new BazelQueryCache.Entry(results, true));
+  }
+
+  @Test
+  void itShouldBeStaleWhenASourceBuildFileChanges() throws Exception {
+    var lib = Files.createDirectories(workspace.resolve("lib").resolve("src"));
+    Files.writeString(workspace.resolve("lib").resolve("BUILD.bazel"), "");
+    var results =
+        new BazelQueryResults(
+            List.of(new BazelDependency(Dependency.Kind.DIRECT, lib.resolve("A.java"))), List.of());
+
+    cache.write(results);
+    Files.writeString(workspace.resolve("lib").resolve("BUILD.bazel"), "java_library()");
+    var got = cache.read();
+
+    assertThat(got).hasValue(new BazelQueryCache.Entry(results, true));
+  }
+
+  @Test
+  void itShouldBeStaleWhenAWorkspaceFileIsAdded() throws Exception {
+    var results = someResults();
+
+    cache.write(results);
+    Files.writeString(workspace.resolve("maven_install.json"), "{}");
+    var got = cache.read();
+
+    assertThat(got).hasValue(new BazelQueryCache.Entry(results, true));
+  }
+
+  BazelQueryResults someResults() {
+    return new BazelQueryResults(
+        List.of(new BazelDependency(Dependency.Kind.DIRECT, target.resolve("A.java"))),
+        List.of(
+            new BazelDependency(Dependency.Kind.DIRECT, Path.of("/external/a.jar")),
+            new BazelDependency(Dependency.Kind.TRANSITIVE, Path.of("/external/b.jar"))));
+  }
+}
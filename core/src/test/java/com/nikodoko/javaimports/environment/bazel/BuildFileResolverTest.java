@@ -0,0 +1,133 @@
+package com.nikodoko.javaimports.environment.bazel;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.nikodoko.javaimports.environment.shared.Dependency;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class BuildFileResolverTest {
+  static final String MAVEN_INSTALL =
+      """
+      {
+        "__AUTOGENERATED_FILE_DO_NOT_MODIFY_THIS_FILE_MANUALLY": "THERE_IS_NO_DATA_ONLY_ZUUL",
+        "__INPUT_ARTIFACTS_HASH": -1045036349,
+        "artifacts": {
+          "com.mycompany.app:a-dependency": {
+            "shasums": {"jar": "abc"},
+            "version": "1.0"
+          },
+          "com.mycompany.app:an-indirect-dependency": {
+            "shasums": {"jar": "def"},
+            "version": "2.0"
+          }
+        },
+        "dependencies": {
+          "com.mycompany.app:a-dependency": ["com.mycompany.app:an-indirect-dependency"]
+        },
+        "repositories": {"https://repo1.maven.org/maven2/": []},
+        "version": "2"
+      }
+      """;
+
+  Path workspace;
+  Path outputBase;
+  Path app;
+  Path lib;
+
+  @BeforeEach
+  void setup() throws Exception {
+    var tmp = Files.createTempDirectory("");
+    workspace = Files.createDirectory(tmp.resolve("workspace"));
+    outputBase = Files.createDirectory(tmp.resolve("output_base"));
+    app = Files.createDirectories(workspace.resolve("app"));
+    lib = Files.createDirectories(workspace.resolve("lib"));
+    Files.writeString(workspace.resolve("WORKSPACE"), "");
+    Files.writeString(workspace.resolve(MavenInstall.NAME), MAVEN_INSTALL);
+    Files.writeString(
+        app.resolve("BUILD"),
+        """
+        java_library(
+            name = "app",
+            srcs = glob(["**/*.java"]),
+            deps = ["//lib", "@maven//:com_mycompany_app_a_dependency"],
+        )
+        """);
+    Files.writeString(app.resolve("App.java"), "");
+    Files.writeString(
+        lib.resolve("BUILD.bazel"),
+        """
+        java_library(
+            name = "lib",
+            srcs = ["Lib.java"],
+        )
+        """);
+    Files.writeString(lib.resolve("Lib.java"), "");
+  }
+
+  @Test
+  void itShouldResolveFromBuildFiles() throws Exception {
+    var direct = jar("com_mycompany_app_a_dependency_1_0", "a-dependency", "1.0");
+    var transitive =
+        jar("com_mycompany_app_an_indirect_dependency_2_0", "an-indirect-dependency", "2.0");
+
+    var got = resolve();
+
+    assertThat(got)
+        .hasValue(
+            new BazelQueryResults(
+                List.of(
+                    new BazelDependency(Dependency.Kind.DIRECT, app.resolve("App.java")),
+                    new BazelDependency(Dependency.Kind.DIRECT, lib.resolve("Lib.java"))),
+                List.of(
+                    new BazelDependency(Dependency.Kind.DIRECT, direct),
+                    new BazelDependency(Dependency.Kind.TRANSITIVE, transitive))));
+  }
+
+  @Test
+  void itShouldGiveUpIfJarsWereNotFetched() throws Exception {
+    assertThat(resolve()).isEmpty();
+  }
+
+  @Test
+  void itShouldGiveUpOnUnknownRules() throws Exception {
+    jar("com_mycompany_app_a_dependency_1_0", "a-dependency", "1.0");
+    jar("com_mycompany_app_an_indirect_dependency_2_0", "an-indirect-dependency", "2.0");
+    Files.writeString(lib.resolve("BUILD.bazel"), "my_java_macro(name = \"lib\")");
+
+    assertThat(resolve()).isEmpty();
+  }
+
+  @Test
+  void itShouldSupportBazelGlobs() {
+    var glob = BuildFileResolver.toRegex("src/**/*.java");
+
+    assertThat(glob.matcher("src/A.java").matches()).isTrue();
+    assertThat(glob.matcher("src/a/b/A.java").matches()).isTrue();
+    assertThat(glob.matcher("src/A.kt").matches()).isFalse();
+    assertThat(glob.matcher("other/A.java").matches()).isFalse();
+  }
+
+  Optional<BazelQueryResults> resolve() {
+    return BuildFileResolver.resolve(workspace, outputBase, false, app, app.resolve("App.java"));
+  }
+
+  Path jar(String repository, String artifact, String version) throws Exception {
+    var jar =
+        outputBase
+            .resolve("external")
+            .resolve(repository)
+            .resolve("file/v1/com/mycompany/app")
+            .resolve(artifact)
+            .resolve(version)
+            .resolve(artifact + "-" + version + ".jar");
+    Files.createDirectories(jar.getParent());
+    Files.writeString(jar, "");
+    return jar;
+  }
+}
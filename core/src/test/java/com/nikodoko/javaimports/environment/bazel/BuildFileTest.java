@@ -0,0 +1,84 @@
+package com.nikodoko.javaimports.environment.bazel;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class BuildFileTest {
+  @Test
+  void itShouldReadSimpleRules() {
+    var got =
+        BuildFile.parse(
+            """
+load("@rules_java//java:defs.bzl", "java_library")
+
+# A comment
+java_library(
+    name = "lib",
+    srcs = glob(["src/main/java/**/*.java"], exclude = ["**/Ignored.java"]) + ["Extra.java"],
+    deps = [
+        "//other:other",
+        "@maven//:com_google_guava_guava",  # trailing comments are fine
+    ],
+    visibility = ["//visibility:public"],
+)
+""");
+
+    assertThat(got.isComplete).isTrue();
+    assertThat(got.rules).hasSize(2);
+    var lib = got.rules.get(1);
+    assertThat(lib.kind()).isEqualTo("java_library");
+    assertThat(lib.name()).hasValue("lib");
+    assertThat(lib.attribute("srcs"))
+        .hasValue(
+            new BuildFile.Attribute(
+                List.of("Extra.java"),
+                List.of(
+                    new BuildFile.Glob(
+                        List.of("src/main/java/**/*.java"), List.of("**/Ignored.java")))));
+    assertThat(lib.attribute("deps"))
+        .hasValue(
+            new BuildFile.Attribute(
+                List.of("//other:other", "@maven//:com_google_guava_guava"), List.of()));
+    assertThat(lib.attribute("runtime_deps")).hasValue(BuildFile.Attribute.EMPTY);
+  }
+
+  @Test
+  void itShouldNotUnderstandComputedAttributes() {
+    var got =
+        BuildFile.parse(
+            """
+            DEPS = ["//other"]
+
+            java_library(
+                name = "lib",
+                srcs = select({"//conditions:default": ["A.java"]}),
+                deps = DEPS + [x for x in ["//another"]],
+                resources = ["a.txt"] if True else [],
+            )
+            """);
+
+    assertThat(got.isComplete).isTrue();
+    var lib = got.rules.get(0);
+    assertThat(lib.name()).hasValue("lib");
+    assertThat(lib.attribute("srcs")).isEmpty();
+    assertThat(lib.attribute("deps")).isEmpty();
+    assertThat(lib.attribute("resources")).isEmpty();
+  }
+
+  @Test
+  void itShouldBeIncompleteWithUnsupportedStatements() {
+    var got =
+        BuildFile.parse(
+            """
+            def my_macro(name):
+                java_library(name = name)
+
+            my_macro("lib")
+            """);
+
+    assertThat(got.isComplete).isFalse();
+  }
+}
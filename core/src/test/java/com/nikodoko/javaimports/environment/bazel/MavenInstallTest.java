@@ -0,0 +1,27 @@
+package com.nikodoko.javaimports.environment.bazel;
+
+import static com.google.common.truth.Truth8.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class MavenInstallTest {
+  @Test
+  void itShouldUnescapeStrings() {
+    var got =
+        MavenInstall.parse(
+            """
+            {
+              "artifacts": {
+                "com.mycompany.app:a-dependency": {
+                  "version": "\\"1.0\\"\\\\\\/\\b\\f\\n\\r\\t\\u0041"
+                }
+              },
+              "version": "2"
+            }
+            """);
+
+    assertThat(got.flatMap(m -> m.artifactForTarget("com_mycompany_app_a_dependency")))
+        .hasValue(
+            new MavenInstall.Artifact("com.mycompany.app:a-dependency", "\"1.0\"\\/\b\f\n\r\tA"));
+  }
+}
@@ -0,0 +1,74 @@
+package com.nikodoko.javaimports.environment.maven;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.nikodoko.javaimports.common.Import;
+import com.nikodoko.javaimports.common.Selector;
+import com.nikodoko.javaimports.environment.shared.Dependency;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DependencySnapshotTest {
+  Path tmp;
+
+  @BeforeEach
+  void setup() throws Exception {
+    tmp = Files.createTempDirectory("");
+  }
+
+  @Test
+  void itShouldReadWhatWasWritten() throws Exception {
+    var file = tmp.resolve("cache").resolve("a.snapshot");
+    var snapshot =
+        new DependencySnapshot(
+            List.of(
+                new DependencySnapshot.Jar(
+                    Dependency.Kind.DIRECT,
+                    Path.of("/repository/a.jar"),
+                    42,
+                    List.of(anImport("com.a.A", false), anImport("com.a.A.b", true))),
+                new DependencySnapshot.Jar(
+                    Dependency.Kind.TRANSITIVE, Path.of("/repository/b.jar"), -1, List.of())));
+
+    snapshot.write(file);
+    var got = DependencySnapshot.read(file);
+
+    assertThat(got).isPresent();
+    assertThat(got.get().jars).containsExactlyElementsIn(snapshot.jars).inOrder();
+  }
+
+  @Test
+  void itShouldNotReadAMissingSnapshot() throws Exception {
+    assertThat(DependencySnapshot.read(tmp.resolve("missing.snapshot"))).isEmpty();
+  }
+
+  @Test
+  void itShouldNotReadACorruptedSnapshot() throws Exception {
+    var file = tmp.resolve("corrupted.snapshot");
+    Files.write(file, new byte[] {0, 0, 0, 1, 0});
+
+    assertThat(DependencySnapshot.read(file)).isEmpty();
+  }
+
+  @Test
+  void itShouldChangeLocationWhenAPomChanges() throws Exception {
+    var pom = tmp.resolve("pom.xml");
+    Files.writeString(pom, "<project></project>");
+    var before = DependencySnapshot.location(tmp, tmp, List.of(pom));
+    var same = DependencySnapshot.location(tmp, tmp, List.of(pom));
+
+    Files.writeString(pom, "<project><version>2</version></project>");
+    var after = DependencySnapshot.location(tmp, tmp, List.of(pom));
+
+    assertThat(same).isEqualTo(before);
+    assertThat(after).isNotEqualTo(before);
+  }
+
+  static Import anImport(String s, boolean isStatic) {
+    return new Import(Selector.of(List.of(s.split("\\."))), isStatic);
+  }
+}
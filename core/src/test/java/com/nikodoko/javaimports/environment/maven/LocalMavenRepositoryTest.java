@@ -1,23 +1,30 @@
 package com.nikodoko.javaimports.environment.maven;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class LocalMavenRepositoryTest {
   static final URL rootURL =
       LocalMavenRepositoryTest.class.getResource("/fixtures/unittests/javaimports-pom/core");
-  static final URL repositoryURL = MavenDependencyLoaderTest.class.getResource("/.m2/repository");
+  static final URL repositoryURL = LocalMavenRepositoryTest.class.getResource("/.m2/repository");
 
   LocalMavenRepository repository;
+  @TempDir Path tmp;
 
   @BeforeEach
   void setup() throws Exception {
@@ -185,6 +192,91 @@ public class LocalMavenRepositoryTest {
     assertThat(gotCoord).containsExactlyElementsIn(expectedDependencies);
   }
 
+  @Test
+  void itShouldGetTheSameTransitiveDependenciesWhenRunningInParallel() throws Exception {
+    var executor = Executors.newFixedThreadPool(4);
+    try {
+      var resolver = MavenDependencyResolver.withRepository(Paths.get(repositoryURL.toURI()));
+      var parallel = new LocalMavenRepository(resolver, executor);
+      var target = aDependency("com.nikodoko.javaimports:javaimports:jar:1.3");
+
+      var expected =
+          repository.getTransitiveDependencies(repository.getDirectDependencies(target), -1);
+      var got = parallel.getTransitiveDependencies(parallel.getDirectDependencies(target), -1);
+
+      assertThat(got).containsExactlyElementsIn(expected).inOrder();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void itShouldIgnoreImportCycles() throws Exception {
+    var boms = bomsImportingEachOther();
+    var repository = new LocalMavenRepository(MavenDependencyResolver.withRepository(boms));
+
+    var got =
+        assertTimeoutPreemptively(
+            Duration.ofSeconds(10),
+            () -> repository.getManagedDependencies(aDependency("com.boms:a-bom:pom:1.0")));
+
+    assertThat(got)
+        .containsAtLeast(
+            aDependency("com.boms:a-managed:jar:1.0"), aDependency("com.boms:b-managed:jar:1.0"));
+  }
+
+  @Test
+  void itShouldIgnoreImportCyclesWhenRunningInParallel() throws Exception {
+    var boms = bomsImportingEachOther();
+    var executor = Executors.newFixedThreadPool(2);
+    try {
+      var repository =
+          new LocalMavenRepository(MavenDependencyResolver.withRepository(boms), executor);
+      var targets =
+          List.of(aDependency("com.boms:a-bom:pom:1.0"), aDependency("com.boms:b-bom:pom:1.0"));
+
+      for (var i = 0; i < 20; i++) {
+        assertTimeoutPreemptively(
+            Duration.ofSeconds(10), () -> repository.getTransitiveDependencies(targets, -1));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  // a-bom imports b-bom, which imports both a-bom and itself
+  private Path bomsImportingEachOther() throws Exception {
+    writeBom("a-bom", "b-bom");
+    writeBom("b-bom", "a-bom", "b-bom");
+    return tmp;
+  }
+
+  private void writeBom(String name, String... imports) throws Exception {
+    var managed = new StringBuilder();
+    managed.append(
+        String.format(
+            "<dependency><groupId>com.boms</groupId><artifactId>%s</artifactId>"
+                + "<version>1.0</version></dependency>",
+            name.replace("-bom", "-managed")));
+    for (var i : imports) {
+      managed.append(
+          String.format(
+              "<dependency><groupId>com.boms</groupId><artifactId>%s</artifactId>"
+                  + "<version>1.0</version><type>pom</type><scope>import</scope></dependency>",
+              i));
+    }
+
+    var directory = Files.createDirectories(tmp.resolve("com/boms").resolve(name).resolve("1.0"));
+    Files.writeString(
+        directory.resolve(name + "-1.0.pom"),
+        String.format(
+            "<project><modelVersion>4.0.0</modelVersion><groupId>com.boms</groupId>"
+                + "<artifactId>%s</artifactId><version>1.0</version><packaging>pom</packaging>"
+                + "<dependencyManagement><dependencies>%s</dependencies></dependencyManagement>"
+                + "</project>",
+            name, managed));
+  }
+
   private static MavenDependency aDependency(String depString) {
     return aDependencyWithExclusions(depString);
   }
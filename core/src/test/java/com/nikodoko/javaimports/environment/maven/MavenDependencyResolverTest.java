@@ -13,7 +13,7 @@ import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
 public class MavenDependencyResolverTest {
-  static final URL repositoryURL = MavenDependencyLoaderTest.class.getResource("/.m2/repository");
+  static final URL repositoryURL = MavenDependencyResolverTest.class.getResource("/.m2/repository");
   MavenDependencyResolver resolver;
   Path repository;
 
@@ -43,15 +43,15 @@ public class MavenDependencyResolverTest {
             "com/mycompany/app/a-dependency/1.0/a-dependency-1.0-tests.jar",
             "com/mycompany/app/a-dependency/1.0/a-dependency-1.0.pom"),
         Arguments.of(
-            "A dependency with an unresolved property is resolved to the first available one",
+            "A dependency with an unresolved property is resolved to the latest available one",
             mavenDependency("com.mycompany.app", "a-dependency", "${a.property}"),
-            "com/mycompany/app/a-dependency/1.0/a-dependency-1.0.jar",
-            "com/mycompany/app/a-dependency/1.0/a-dependency-1.0.pom"),
+            "com/mycompany/app/a-dependency/3.0/a-dependency-3.0.jar",
+            "com/mycompany/app/a-dependency/3.0/a-dependency-3.0.pom"),
         Arguments.of(
-            "A dependency without plain version is resolved to the first available one",
+            "A dependency without plain version is resolved to the latest available one",
             mavenDependency("com.mycompany.app", "a-dependency", null),
-            "com/mycompany/app/a-dependency/1.0/a-dependency-1.0.jar",
-            "com/mycompany/app/a-dependency/1.0/a-dependency-1.0.pom"));
+            "com/mycompany/app/a-dependency/3.0/a-dependency-3.0.jar",
+            "com/mycompany/app/a-dependency/3.0/a-dependency-3.0.pom"));
   }
 
   @BeforeEach
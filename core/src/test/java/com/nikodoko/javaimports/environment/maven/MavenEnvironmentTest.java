@@ -2,6 +2,7 @@ package com.nikodoko.javaimports.environment.maven;
 
 import static com.google.common.truth.Truth.assertThat;
 import static com.nikodoko.javaimports.common.CommonTestUtil.aSelector;
+import static com.nikodoko.javaimports.common.CommonTestUtil.aStaticImport;
 import static com.nikodoko.javaimports.common.CommonTestUtil.anImport;
 import static com.nikodoko.javaimports.common.CommonTestUtil.someIdentifiers;
 
@@ -11,20 +12,25 @@ import com.nikodoko.javaimports.common.Identifier;
 import com.nikodoko.javaimports.common.Superclass;
 import com.nikodoko.javaimports.environment.Environment;
 import com.nikodoko.javaimports.environment.Environments;
+import com.nikodoko.javaimports.environment.shared.Dependency;
+import com.nikodoko.javaimports.environment.shared.LazyJar;
+import com.nikodoko.javaimports.environment.shared.SymbolTable;
 import com.nikodoko.packagetest.BuildSystem;
 import com.nikodoko.packagetest.Export;
 import com.nikodoko.packagetest.Exported;
 import com.nikodoko.packagetest.Module;
 import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class MavenEnvironmentTest {
-  static final URL repositoryURL = MavenDependencyLoaderTest.class.getResource("/.m2/repository");
+  static final URL repositoryURL = MavenEnvironmentTest.class.getResource("/.m2/repository");
   Exported project;
   Path repository;
 
@@ -133,4 +139,59 @@ public class MavenEnvironmentTest {
             .build();
     assertThat(got.get()).isEqualTo(expected);
   }
+
+  @Test
+  void itShouldLoadClassesFromTheDependencySnapshot(@TempDir Path cache) throws Exception {
+    var module =
+        Module.named("test.module")
+            .containing(Module.file("Main.java", "package test.module;"))
+            .dependingOn(Module.dependency("com.mycompany.app", "a-dependency", "1.0"));
+    project = Export.of(BuildSystem.MAVEN, module);
+    var target = project.file(module.name(), "Main.java").get();
+    var options = Options.builder().repository(repository).cacheDirectory(cache).build();
+    Environments.autoSelect(target, aSelector("test.module"), options)
+        .findClass(anImport("com.mycompany.app.App"));
+
+    // Point the snapshot to another version of the dependency, whose classes differ
+    var other = repository.resolve("com/mycompany/app/a-dependency/2.0/a-dependency-2.0.jar");
+    List<Path> snapshots;
+    try (var files = Files.list(cache.resolve("maven"))) {
+      snapshots = files.toList();
+    }
+    assertThat(snapshots).hasSize(1);
+    new DependencySnapshot(
+            List.of(
+                new DependencySnapshot.Jar(
+                    Dependency.Kind.DIRECT,
+                    other,
+                    DependencySnapshot.lastModified(other),
+                    List.of(anImport("com.mycompany.app.App")))))
+        .write(snapshots.get(0));
+    var environment = Environments.autoSelect(target, aSelector("test.module"), options);
+
+    var got = environment.findClass(anImport("com.mycompany.app.App"));
+
+    assertThat(got).isEqualTo(new LazyJar(other).findClass(anImport("com.mycompany.app.App")));
+  }
+
+  @Test
+  void itShouldIndexTheDependenciesItReads(@TempDir Path cache) throws Exception {
+    var module =
+        Module.named("test.module")
+            .containing(Module.file("Main.java", "package test.module;"))
+            .dependingOn(Module.dependency("com.mycompany.app", "a-dependency", "2.0"));
+    project = Export.of(BuildSystem.MAVEN, module);
+    var target = project.file(module.name(), "Main.java").get();
+    var options = Options.builder().repository(repository).cacheDirectory(cache).build();
+    Environments.autoSelect(target, aSelector("test.module"), options)
+        .findImports(new Identifier("main"));
+
+    var table = SymbolTable.open(SymbolTable.location(cache));
+    var jar = repository.resolve("com/mycompany/app/a-dependency/2.0/a-dependency-2.0.jar");
+
+    assertThat(table.isPresent()).isTrue();
+    assertThat(table.get().find(jar).isPresent()).isTrue();
+    assertThat(table.get().findImports(new Identifier("main")))
+        .containsExactly(aStaticImport("com.mycompany.app.App.main"));
+  }
 }
@@ -0,0 +1,109 @@
+package com.nikodoko.javaimports.environment.maven;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PomIndexTest {
+  static final URL repositoryURL = PomIndexTest.class.getResource("/.m2/repository");
+
+  @TempDir Path tmp;
+  Path repository;
+  Path file;
+  List<Path> poms;
+
+  @BeforeEach
+  void setup() throws Exception {
+    repository = Paths.get(repositoryURL.toURI());
+    file = PomIndex.location(tmp.resolve("cache"));
+    try (var paths = Files.walk(repository)) {
+      poms = paths.filter(p -> p.toString().endsWith(".pom")).collect(Collectors.toList());
+    }
+  }
+
+  @Test
+  void itShouldFindPomsAsDeclared() throws Exception {
+    var parsed = PomIndex.refresh(file, poms, Runnable::run);
+    var index = PomIndex.open(file);
+
+    assertThat(parsed).isEqualTo(poms.size());
+    assertThat(index.size()).isEqualTo(poms.size());
+    for (var pom : poms) {
+      var got = index.find(pom);
+      var expected = MavenPomLoader.load(pom).pom;
+
+      assertThat(got).isPresent();
+      var flattened = got.get().flatten();
+      assertThat(flattened.dependencies())
+          .containsExactlyElementsIn(expected.dependencies())
+          .inOrder();
+      assertThat(flattened.managedDependencies())
+          .containsExactlyElementsIn(expected.managedDependencies());
+      assertThat(flattened.hasParent()).isEqualTo(expected.hasParent());
+    }
+  }
+
+  @Test
+  void itShouldOnlyParseNewOrModifiedPoms() throws Exception {
+    var copy = tmp.resolve("a.pom");
+    Files.copy(poms.get(0), copy);
+
+    assertThat(PomIndex.refresh(file, List.of(copy), Runnable::run)).isEqualTo(1);
+    assertThat(PomIndex.refresh(file, List.of(copy), Runnable::run)).isEqualTo(0);
+
+    var lastModified = Files.getLastModifiedTime(copy).toMillis();
+    Files.setLastModifiedTime(copy, FileTime.fromMillis(lastModified + 1000));
+
+    assertThat(PomIndex.open(file).find(copy)).isEmpty();
+    assertThat(PomIndex.refresh(file, List.of(copy), Runnable::run)).isEqualTo(1);
+    assertThat(PomIndex.open(file).find(copy)).isPresent();
+  }
+
+  @Test
+  void itShouldKeepPomsIndexedPreviously() throws Exception {
+    PomIndex.refresh(file, poms.subList(0, 1), Runnable::run);
+    PomIndex.refresh(file, poms.subList(1, 2), Runnable::run);
+
+    var index = PomIndex.open(file);
+    assertThat(index.find(poms.get(0))).isPresent();
+    assertThat(index.find(poms.get(1))).isPresent();
+  }
+
+  @Test
+  void itShouldBeEmptyIfTheFileIsNotAnIndex() throws Exception {
+    Files.createDirectories(file.getParent());
+    Files.write(file, new byte[] {0, 0, 0, 1, 0, 0, 0, 2});
+
+    assertThat(PomIndex.open(file).size()).isEqualTo(0);
+    assertThat(PomIndex.refresh(file, poms.subList(0, 1), Runnable::run)).isEqualTo(1);
+    assertThat(PomIndex.open(file).find(poms.get(0))).isPresent();
+  }
+
+  @Test
+  void itShouldResolveTheSameDependenciesWithAnIndex() throws Exception {
+    PomIndex.refresh(file, poms, Runnable::run);
+    var resolver = MavenDependencyResolver.withRepository(repository);
+    var target =
+        List.of(
+            new MavenDependency(
+                "javax.enterprise", "cdi-api", "1.0", "jar", null, "compile", false, List.of()));
+
+    var expected = new LocalMavenRepository(resolver).getTransitiveDependencies(target, -1);
+    var got =
+        new LocalMavenRepository(resolver, Runnable::run, () -> PomIndex.open(file))
+            .getTransitiveDependencies(target, -1);
+
+    assertThat(expected).isNotEmpty();
+    assertThat(got).containsExactlyElementsIn(expected).inOrder();
+  }
+}
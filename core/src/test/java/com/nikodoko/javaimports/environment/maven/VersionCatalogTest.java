@@ -0,0 +1,115 @@
+package com.nikodoko.javaimports.environment.maven;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class VersionCatalogTest {
+  @TempDir Path tmp;
+  Path artifact;
+
+  @BeforeEach
+  void setup() throws Exception {
+    artifact = tmp.resolve("repository").resolve("an-artifact");
+  }
+
+  @Test
+  void itShouldOrderVersionsAsMavenDoes() throws Exception {
+    withVersions("1.9", "1.10", "1.10-rc1", "2.0-SNAPSHOT", "1.2.3");
+
+    var got = new VersionCatalog().versions(artifact);
+
+    assertThat(got).containsExactly("2.0-SNAPSHOT", "1.10", "1.10-rc1", "1.9", "1.2.3").inOrder();
+  }
+
+  @Test
+  void itShouldPreferReleases() throws Exception {
+    withVersions("1.0", "2.0-SNAPSHOT");
+
+    assertThat(new VersionCatalog().latest(artifact)).hasValue("1.0");
+  }
+
+  @Test
+  void itShouldUseSnapshotsIfThereIsNoRelease() throws Exception {
+    withVersions("1.0-SNAPSHOT", "2.0-SNAPSHOT");
+
+    assertThat(new VersionCatalog().latest(artifact)).hasValue("2.0-SNAPSHOT");
+  }
+
+  @Test
+  void itShouldListVersionsOnlyOnce() throws Exception {
+    withVersions("1.0");
+    var catalog = new VersionCatalog();
+    catalog.versions(artifact);
+
+    withVersions("2.0");
+
+    assertThat(catalog.latest(artifact)).hasValue("1.0");
+  }
+
+  @Test
+  void itShouldUsePersistedVersionsUntilTheArtifactIsModified() throws Exception {
+    var file = VersionCatalog.location(tmp.resolve("cache"));
+    withVersions("1.0");
+
+    assertThat(VersionCatalog.refresh(file, List.of(artifact))).isEqualTo(1);
+    assertThat(VersionCatalog.refresh(file, List.of(artifact))).isEqualTo(0);
+
+    // Remove the version behind the catalog's back, without modifying the artifact
+    var lastModified = Files.getLastModifiedTime(artifact);
+    Files.delete(artifact.resolve("1.0"));
+    Files.setLastModifiedTime(artifact, lastModified);
+
+    assertThat(new VersionCatalog(Optional.of(file)).latest(artifact)).hasValue("1.0");
+
+    Files.setLastModifiedTime(artifact, FileTime.fromMillis(lastModified.toMillis() + 1000));
+
+    assertThat(new VersionCatalog(Optional.of(file)).latest(artifact)).isEmpty();
+  }
+
+  @Test
+  void itShouldKeepArtifactsPersistedByPreviousRefreshes() throws Exception {
+    var file = VersionCatalog.location(tmp.resolve("cache"));
+    var other = tmp.resolve("repository").resolve("another-artifact");
+    Files.createDirectories(other.resolve("2.0"));
+    withVersions("1.0");
+
+    VersionCatalog.refresh(file, List.of(artifact));
+    assertThat(VersionCatalog.refresh(file, List.of(other))).isEqualTo(1);
+
+    // Remove the version behind the catalog's back, without modifying the artifact
+    var lastModified = Files.getLastModifiedTime(artifact);
+    Files.delete(artifact.resolve("1.0"));
+    Files.setLastModifiedTime(artifact, lastModified);
+
+    var catalog = new VersionCatalog(Optional.of(file));
+    assertThat(catalog.latest(artifact)).hasValue("1.0");
+    assertThat(catalog.latest(other)).hasValue("2.0");
+  }
+
+  @Test
+  void itShouldListVersionsIfTheFileIsNotACatalog() throws Exception {
+    var file = VersionCatalog.location(tmp.resolve("cache"));
+    Files.createDirectories(file.getParent());
+    Files.write(file, new byte[] {0, 0, 0, 1, 0, 0, 0, 1});
+    withVersions("1.0");
+
+    assertThat(new VersionCatalog(Optional.of(file)).latest(artifact)).hasValue("1.0");
+    assertThat(VersionCatalog.refresh(file, List.of(artifact))).isEqualTo(1);
+    assertThat(VersionCatalog.refresh(file, List.of(artifact))).isEqualTo(0);
+  }
+
+  void withVersions(String... versions) throws Exception {
+    for (var version : versions) {
+      Files.createDirectories(artifact.resolve(version));
+    }
+  }
+}
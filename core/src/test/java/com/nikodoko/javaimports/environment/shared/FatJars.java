@@ -0,0 +1,33 @@
+package com.nikodoko.javaimports.environment.shared;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/** Builds fat jars like Spring Boot does, storing nested jars without compressing them. */
+class FatJars {
+  static void write(Path path, Map<String, byte[]> entries) throws IOException {
+    try (var zip = new ZipOutputStream(Files.newOutputStream(path))) {
+      for (var e : new TreeMap<>(entries).entrySet()) {
+        var content = e.getValue();
+        var entry = new ZipEntry(e.getKey());
+        if (e.getKey().endsWith(".jar")) {
+          var crc = new CRC32();
+          crc.update(content);
+          entry.setMethod(ZipEntry.STORED);
+          entry.setSize(content.length);
+          entry.setCrc(crc.getValue());
+        }
+
+        zip.putNextEntry(entry);
+        zip.write(content);
+        zip.closeEntry();
+      }
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package com.nikodoko.javaimports.environment.shared;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class JarScannerTest {
+  static final URL repositoryURL = JarScannerTest.class.getResource("/.m2/repository");
+  Path repository;
+
+  @BeforeEach
+  void setup() throws Exception {
+    repository = Paths.get(repositoryURL.toURI());
+  }
+
+  @Test
+  void itShouldReadTheSameEntriesAsZipFile() throws Exception {
+    var path = repository.resolve("com/mycompany/app/a-dependency/2.0/a-dependency-2.0.jar");
+    var jar = JarScanner.open(path);
+
+    try (var zip = new ZipFile(path.toFile())) {
+      var expected = zip.stream().map(ZipEntry::getName).sorted().toList();
+      assertThat(names(jar)).containsExactlyElementsIn(expected).inOrder();
+
+      for (var entry : jar.entries()) {
+        try (var in = jar.open(entry)) {
+          assertThat(in.readAllBytes())
+              .isEqualTo(zip.getInputStream(zip.getEntry(entry.name())).readAllBytes());
+        }
+      }
+    }
+  }
+
+  @Test
+  void itShouldReadTheEntriesOfALargeJar(@TempDir Path tmp) throws Exception {
+    var path = tmp.resolve("large.jar");
+    var expected = new ArrayList<String>();
+    try (var zip = new ZipOutputStream(Files.newOutputStream(path))) {
+      for (var i = 0; i < 20_000; i++) {
+        var name = "com/example/p%d/C%d.class".formatted(i % 7, i);
+        expected.add(name);
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(name.getBytes());
+        zip.closeEntry();
+      }
+    }
+
+    var jar = JarScanner.open(path);
+
+    Collections.sort(expected);
+    assertThat(names(jar)).containsExactlyElementsIn(expected).inOrder();
+    var entry = jar.entry("com/example/p4/C12345.class");
+    assertThat(entry.isPresent()).isTrue();
+    try (var in = jar.open(entry.get())) {
+      assertThat(new String(in.readAllBytes())).isEqualTo("com/example/p4/C12345.class");
+    }
+  }
+
+  @Test
+  void itShouldReadStoredNestedJars(@TempDir Path tmp) throws Exception {
+    var dependency = repository.resolve("com/mycompany/app/a-dependency/2.0/a-dependency-2.0.jar");
+    var path = tmp.resolve("fat.jar");
+    FatJars.write(
+        path, Map.of("BOOT-INF/lib/a-dependency-2.0.jar", Files.readAllBytes(dependency)));
+    var jar = JarScanner.open(path);
+
+    var nested = jar.nested(jar.entry("BOOT-INF/lib/a-dependency-2.0.jar").get());
+
+    try (var zip = new ZipFile(dependency.toFile())) {
+      var expected = zip.stream().map(ZipEntry::getName).sorted().toList();
+      assertThat(names(nested)).containsExactlyElementsIn(expected).inOrder();
+    }
+  }
+
+  @Test
+  void itShouldReadStoredEntriesOfAPrefixedJar(@TempDir Path tmp) throws Exception {
+    var content = new ByteArrayOutputStream();
+    // Executable jars can start with a launch script
+    content.write("#!/bin/sh\nexec java -jar \"$0\"\n".getBytes());
+    try (var zip = new ZipOutputStream(content)) {
+      zip.setMethod(ZipOutputStream.STORED);
+      var entry = new ZipEntry("com/example/A.class");
+      var bytes = new byte[] {1, 2, 3};
+      entry.setSize(bytes.length);
+      entry.setCrc(0x55bc801dL);
+      zip.putNextEntry(entry);
+      zip.write(bytes);
+      zip.closeEntry();
+    }
+
+    var path = tmp.resolve("prefixed.jar");
+    Files.write(path, content.toByteArray());
+    var jar = JarScanner.open(path);
+
+    var entry = jar.entry("com/example/A.class");
+    assertThat(entry.isPresent()).isTrue();
+    try (var in = jar.open(entry.get())) {
+      assertThat(in.readAllBytes()).isEqualTo(new byte[] {1, 2, 3});
+    }
+  }
+
+  static List<String> names(JarScanner jar) {
+    return jar.entries().stream().map(JarScanner.Entry::name).toList();
+  }
+}
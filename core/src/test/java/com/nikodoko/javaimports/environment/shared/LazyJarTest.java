@@ -2,6 +2,7 @@ package com.nikodoko.javaimports.environment.shared;
 
 import static com.google.common.truth.Truth.assertThat;
 import static com.nikodoko.javaimports.common.CommonTestUtil.aSelector;
+import static com.nikodoko.javaimports.common.CommonTestUtil.aStaticImport;
 import static com.nikodoko.javaimports.common.CommonTestUtil.anImport;
 import static com.nikodoko.javaimports.common.CommonTestUtil.someIdentifiers;
 
@@ -10,12 +11,16 @@ import com.nikodoko.javaimports.common.Import;
 import com.nikodoko.javaimports.common.Superclass;
 import com.nikodoko.javaimports.common.telemetry.Logs;
 import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
+import java.util.zip.ZipFile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -131,6 +136,85 @@ public class LazyJarTest {
     assertThat(got.get()).isEqualTo(expected);
   }
 
+  @Test
+  void itShouldOnlyFindPublicStaticMembers() {
+    var path =
+        repository.resolve("com/mycompany/app/another-dependency/1.0/another-dependency-1.0.jar");
+    var jar = new LazyJar(path);
+
+    var got =
+        jar.findAllImports().stream()
+            .filter(i -> i.isStatic)
+            .filter(i -> i.selector.scope().equals(aSelector("com.mycompany.app.App")))
+            .toList();
+
+    assertThat(got)
+        .containsExactly(
+            aStaticImport("com.mycompany.app.App.aPublicStaticField"),
+            aStaticImport("com.mycompany.app.App.aPublicStaticMethod"));
+  }
+
+  @Test
+  void itShouldFindClassesOfFatJars(@TempDir Path tmp) throws Exception {
+    var dependency = repository.resolve("com/mycompany/app/a-dependency/1.0/a-dependency-1.0.jar");
+    var path = tmp.resolve("fat.jar");
+    FatJars.write(
+        path,
+        Map.of(
+            "BOOT-INF/classes/com/mycompany/app/internal/Internal.class",
+            readEntry(
+                "com/mycompany/app/a-java9-dependency/1.0/a-java9-dependency-1.0.jar",
+                "com/mycompany/app/internal/Internal.class"),
+            "BOOT-INF/lib/a-dependency-1.0.jar",
+            Files.readAllBytes(dependency)));
+    var jar = new LazyJar(path);
+
+    var got = jar.findAllImports();
+
+    assertThat(got)
+        .containsExactly(
+            anImport("com.mycompany.app.internal.Internal"),
+            anImport("com.mycompany.app.App"),
+            anImport("com.mycompany.anotherapp.AnotherApp"),
+            anImport("com.mycompany.app.another.app.again.AnotherApp"));
+    assertThat(jar.findClass(anImport("com.mycompany.app.internal.Internal")).isPresent()).isTrue();
+    assertThat(jar.findClass(anImport("com.mycompany.app.App")).isPresent()).isTrue();
+  }
+
+  @Test
+  void itShouldLoadClassesWithoutReadingTheJarAgain(@TempDir Path tmp) throws Exception {
+    var dependency = repository.resolve("com/mycompany/app/a-dependency/1.0/a-dependency-1.0.jar");
+    var path = tmp.resolve("fat.jar");
+    FatJars.write(
+        path, Map.of("BOOT-INF/lib/a-dependency-1.0.jar", Files.readAllBytes(dependency)));
+    var jar = new LazyJar(path);
+    jar.findAllImports();
+
+    // What was mapped to find the importables remains readable
+    Files.delete(path);
+
+    assertThat(jar.findClass(anImport("com.mycompany.app.App")).isPresent()).isTrue();
+  }
+
+  byte[] readEntry(String jar, String entry) throws Exception {
+    try (var zip = new ZipFile(repository.resolve(jar).toFile())) {
+      return zip.getInputStream(zip.getEntry(entry)).readAllBytes();
+    }
+  }
+
+  @Test
+  void itShouldOnlyFindClassesOfExportedPackages() {
+    var path =
+        repository.resolve("com/mycompany/app/a-java9-dependency/1.0/a-java9-dependency-1.0.jar");
+    var jar = new LazyJar(path);
+
+    var got = jar.findAllImports();
+
+    assertThat(got)
+        .containsExactly(
+            anImport("com.mycompany.app.App"), aStaticImport("com.mycompany.app.App.main"));
+  }
+
   static Stream<Arguments> jarPathProvider() {
     return Stream.of(
         Arguments.of(
@@ -146,7 +230,8 @@ public class LazyJarTest {
             List.of(
                 anImport("com.mycompany.app.App.Subclass"),
                 anImport("com.mycompany.app.App.Subclass.Subsubclass"),
-                anImport("com.mycompany.app.App"))));
+                anImport("com.mycompany.app.App"),
+                aStaticImport("com.mycompany.app.App.main"))));
   }
 
   @ParameterizedTest(name = "{0}")
@@ -7,19 +7,24 @@ import com.nikodoko.javaimports.common.ClassEntity;
 import com.nikodoko.javaimports.common.Identifier;
 import com.nikodoko.javaimports.common.Import;
 import com.nikodoko.javaimports.common.Selector;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
 
 public class LazyJavaProjectTest {
   private static class DummySourceFile implements LazyParsedFile {
     private final Selector pkg;
     private boolean isParsed = false;
+    private final CompletableFuture<Void> prefetched = new CompletableFuture<>();
 
     private DummySourceFile(Selector pkg) {
       this.pkg = pkg;
@@ -31,6 +36,11 @@ public class LazyJavaProjectTest {
       return CompletableFuture.completedFuture(null);
     }
 
+    @Override
+    public CompletableFuture<?> prefetch(Executor e) {
+      return prefetched;
+    }
+
     @Override
     public Selector pkg() {
       return pkg;
@@ -114,4 +124,81 @@ public class LazyJavaProjectTest {
     assertThat(directAbc.isParsed).isTrue();
     assertThat(transitiveAbc.isParsed).isTrue();
   }
+
+  @Test
+  void itShouldOnlyCancelPrefetchedFiles() {
+    var directAbc = new DummySourceFile(aSelector("a.b.c"));
+    var transitiveAbc = new DummySourceFile(aSelector("a.b.c"));
+    var files =
+        Map.of(
+            Dependency.Kind.DIRECT,
+            List.of((LazyParsedFile) directAbc),
+            Dependency.Kind.TRANSITIVE,
+            List.of((LazyParsedFile) transitiveAbc));
+
+    var project = new LazyJavaProject(files);
+    project.prefetch(runnable -> {});
+    project.cancelPrefetch();
+
+    assertThat(directAbc.prefetched.isCancelled()).isTrue();
+    assertThat(directAbc.isParsed).isFalse();
+    assertThat(transitiveAbc.prefetched.isCancelled()).isFalse();
+  }
+
+  @Test
+  void itShouldPrefetchWhileFilesAreMadeAvailableOrCancelled() throws Exception {
+    var direct = new ArrayList<LazyParsedFile>();
+    var transitive = new ArrayList<LazyParsedFile>();
+    for (var i = 0; i < 1000; i++) {
+      direct.add(new DummySourceFile(aSelector("a.b.c")));
+      transitive.add(new DummySourceFile(aSelector("a.b.c")));
+    }
+
+    var project =
+        new LazyJavaProject(
+            Map.of(Dependency.Kind.DIRECT, direct, Dependency.Kind.TRANSITIVE, transitive));
+    var executor = Executors.newFixedThreadPool(2);
+    try {
+      var start = new CountDownLatch(1);
+      var prefetching =
+          CompletableFuture.runAsync(
+              () -> {
+                awaitQuietly(start);
+                for (var i = 0; i < 100; i++) {
+                  project.prefetch(runnable -> {});
+                }
+              },
+              executor);
+      var cancelling =
+          CompletableFuture.runAsync(
+              () -> {
+                awaitQuietly(start);
+                project.includeTransitive();
+                for (var i = 0; i < 100; i++) {
+                  project.cancelPrefetch();
+                }
+              },
+              executor);
+
+      start.countDown();
+      prefetching.get(10, TimeUnit.SECONDS);
+      cancelling.get(10, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    project.cancelPrefetch();
+    for (var file : direct) {
+      assertThat(((DummySourceFile) file).prefetched.isCancelled()).isTrue();
+    }
+    assertThat(project.allFiles()).hasSize(2000);
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
 }
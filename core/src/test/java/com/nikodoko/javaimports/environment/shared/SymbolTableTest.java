@@ -0,0 +1,96 @@
+package com.nikodoko.javaimports.environment.shared;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+import static com.nikodoko.javaimports.common.CommonTestUtil.aStaticImport;
+import static com.nikodoko.javaimports.common.CommonTestUtil.anImport;
+
+import com.nikodoko.javaimports.common.Identifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SymbolTableTest {
+  @TempDir Path tmp;
+  Path first;
+  Path second;
+  SymbolTable table;
+
+  @BeforeEach
+  void setup() throws Exception {
+    first = Files.createFile(tmp.resolve("first.jar"));
+    second = Files.createFile(tmp.resolve("second.jar"));
+    var file = SymbolTable.location(tmp.resolve("cache"));
+    SymbolTable.write(
+        file,
+        List.of(
+            new SymbolTable.Jar(
+                second,
+                lastModified(second),
+                List.of(anImport("com.b.App"), aStaticImport("com.b.Utils.ŝtatic"))),
+            new SymbolTable.Jar(
+                first,
+                lastModified(first),
+                List.of(anImport("com.a.App"), anImport("com.a.Other")))));
+    table = SymbolTable.open(file).get();
+  }
+
+  @Test
+  void itShouldFindImportsOfAllJars() {
+    assertThat(table.findImports(new Identifier("App")))
+        .containsExactly(anImport("com.a.App"), anImport("com.b.App"));
+    assertThat(table.findImports(new Identifier("ŝtatic")))
+        .containsExactly(aStaticImport("com.b.Utils.ŝtatic"));
+    assertThat(table.findImports(new Identifier("Missing"))).isEmpty();
+  }
+
+  @Test
+  void itShouldOnlyFindImportsOfTheGivenJars() {
+    var ids = new BitSet();
+    ids.set(table.find(second).getAsInt());
+
+    assertThat(table.findImports(new Identifier("App"), ids))
+        .containsExactly(anImport("com.b.App"));
+    assertThat(table.findImports(new Identifier("Other"), ids)).isEmpty();
+  }
+
+  @Test
+  void itShouldNotFindModifiedJars() throws Exception {
+    assertThat(table.find(first)).isPresent();
+
+    Files.setLastModifiedTime(first, FileTime.fromMillis(lastModified(first) + 1000));
+
+    assertThat(table.find(first)).isEmpty();
+    assertThat(table.find(tmp.resolve("unknown.jar"))).isEmpty();
+  }
+
+  @Test
+  void itShouldKeepUnmodifiedJarsOfAPreviousTable() throws Exception {
+    var third = Files.createFile(tmp.resolve("third.jar"));
+    Files.setLastModifiedTime(first, FileTime.fromMillis(lastModified(first) + 1000));
+    var file = SymbolTable.location(tmp.resolve("other"));
+
+    SymbolTable.write(
+        file,
+        List.of(new SymbolTable.Jar(third, lastModified(third), List.of(anImport("com.c.App")))),
+        Optional.of(table),
+        table.unmodified());
+    var got = SymbolTable.open(file).get();
+
+    assertThat(got.find(first)).isEmpty();
+    assertThat(got.findImports(new Identifier("App")))
+        .containsExactly(anImport("com.b.App"), anImport("com.c.App"));
+    assertThat(got.findImports(new Identifier("ŝtatic")))
+        .containsExactly(aStaticImport("com.b.Utils.ŝtatic"));
+  }
+
+  static long lastModified(Path p) throws Exception {
+    return Files.getLastModifiedTime(p).toMillis();
+  }
+}
@@ -0,0 +1,44 @@
+package com.nikodoko.javaimports.fixer.candidates;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.nikodoko.javaimports.common.CommonTestUtil.anImport;
+
+import com.nikodoko.javaimports.common.Selector;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class CandidatesTest {
+  static final Selector A = Selector.of("A");
+  static final Selector B = Selector.of("B");
+  static final Candidate SHORT_A = new Candidate(anImport("a.A"), Candidate.Source.EXTERNAL);
+  static final Candidate LONG_A = new Candidate(anImport("a.b.A"), Candidate.Source.EXTERNAL);
+  static final Candidate SHORT_B = new Candidate(anImport("b.B"), Candidate.Source.STDLIB);
+  static final Candidate OTHER_SHORT_B = new Candidate(anImport("c.B"), Candidate.Source.STDLIB);
+
+  @Test
+  void itShouldKeepTheHighestScoringCandidatesOfEachSelector() {
+    var candidates =
+        Candidates.merge(
+            List.of(
+                Candidates.forSelector(A).add(LONG_A, SHORT_A).build(),
+                Candidates.forSelector(B).add(SHORT_B, OTHER_SHORT_B).build()));
+
+    var got = candidates.keepHighest(c -> -c.i.selector.size());
+
+    assertThat(got.selectors()).containsExactly(A, B);
+    assertThat(got.getFor(A)).containsExactly(SHORT_A);
+    assertThat(got.getFor(B)).containsExactly(SHORT_B, OTHER_SHORT_B).inOrder();
+    // Narrowing does not change the original candidates
+    assertThat(candidates.getFor(A)).containsExactly(LONG_A, SHORT_A).inOrder();
+  }
+
+  @Test
+  void itShouldKeepTheLastCandidatesForASelectorWhenMerging() {
+    var first = Candidates.forSelector(A).add(LONG_A).build();
+    var last = Candidates.forSelector(A).add(SHORT_A).build();
+
+    var got = Candidates.merge(first, last);
+
+    assertThat(got).isEqualTo(last);
+  }
+}
@@ -0,0 +1,59 @@
+package com.nikodoko.javaimports.fixer.candidates;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+import static com.nikodoko.javaimports.common.CommonTestUtil.anImport;
+
+import com.nikodoko.javaimports.common.Selector;
+import com.nikodoko.javaimports.parser.ParsedFile;
+import com.nikodoko.javaimports.parser.Parser;
+import java.nio.file.Paths;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class ImportFrequenciesTest {
+  static ParsedFile aFileImporting(String... imports) throws Exception {
+    var code = new StringBuilder("package a;\n");
+    for (var i : imports) {
+      code.append("import ").append(i).append(";\n");
+    }
+
+    return new Parser()
+        .parse(Paths.get("A.java"), code.append("class A {}").toString(), null)
+        .get();
+  }
+
+  @Test
+  void itShouldCountEachFileOnce() throws Exception {
+    var frequencies = new ImportFrequencies();
+    var first = aFileImporting("b.Builder", "c.Other");
+    var second = aFileImporting("b.Builder");
+
+    frequencies.addAll(List.of(first));
+    frequencies.addAll(List.of(first, second));
+
+    assertThat(frequencies.of(anImport("b.Builder"))).isEqualTo(2);
+    assertThat(frequencies.of(anImport("c.Other"))).isEqualTo(1);
+    assertThat(frequencies.of(anImport("d.Builder"))).isEqualTo(0);
+  }
+
+  @Test
+  void itShouldPreferTheMostFrequentlyImportedCandidate() throws Exception {
+    var frequencies = new ImportFrequencies();
+    frequencies.addAll(List.of(aFileImporting("z.Builder"), aFileImporting("z.Builder")));
+    var selector = Selector.of("Builder");
+    var closest = anImport("a.Builder");
+    var mostUsed = anImport("z.Builder");
+    var candidates =
+        Candidates.forSelector(selector)
+            .add(
+                new Candidate(closest, Candidate.Source.EXTERNAL),
+                new Candidate(mostUsed, Candidate.Source.EXTERNAL))
+            .build();
+
+    var got =
+        new BasicCandidateSelectionStrategy(Selector.of("a"), frequencies).selectBest(candidates);
+
+    assertThat(got.forSelector(selector)).hasValue(mostUsed);
+  }
+}
@@ -0,0 +1,18 @@
+#!/usr/bin/env bash
+#
+# Builds a profile guided native image (requires Oracle GraalVM):
+#   1. build an instrumented binary,
+#   2. run it on the integration test fixtures, keeping one profile per fixture,
+#   3. build the final binary using these profiles.
+#
+# Run from the root of the repository.
+set -euo pipefail
+
+profiles_dir="$(pwd)/native-image/target/pgo"
+rm -rf "$profiles_dir"
+mkdir -p "$profiles_dir"
+
+mvn -B verify -Pnative-image,pgo-instrument -Djavaimports.pgo.dir="$profiles_dir"
+
+profiles="$(ls "$profiles_dir"/*.iprof | paste -sd, -)"
+mvn -B package -Pnative-image,pgo -Dpgo.profiles="$profiles"
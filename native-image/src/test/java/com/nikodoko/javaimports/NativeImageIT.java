@@ -24,6 +24,7 @@ public class NativeImageIT {
   private static final String INPUT = ".input";
   private static final String OUTPUT = ".output";
   private static final String JAVAIMPORTS_BINARY = "./javaimports-native-image";
+  private static final String PGO_PROFILES_DIR = "javaimports.pgo.dir";
 
   Exported targetPkg;
   Path repository;
@@ -39,7 +40,7 @@ public class NativeImageIT {
   void testNativeImage(String name, Pkg pkg) throws Exception {
     targetPkg = export(pkg);
     var targetFile = targetPkg.file(pkg.name, pkg.target).get();
-    var process = runJavaimportsOn(targetFile);
+    var process = runJavaimportsOn(name, targetFile);
     process.waitFor();
 
     var got = new String(process.getInputStream().readAllBytes());
@@ -49,15 +50,21 @@ public class NativeImageIT {
         .isEqualTo(pkg.expected);
   }
 
-  Process runJavaimportsOn(Path target) throws Exception {
+  Process runJavaimportsOn(String name, Path target) throws Exception {
     var javaHome = System.getProperty("java.home");
-    return new ProcessBuilder(
-            JAVAIMPORTS_BINARY,
-            String.format("-Djava.home=%s", javaHome),
-            String.format("-repository=%s", repository.toString()),
-            "--fix-only",
-            "-v",
-            target.toString())
+    var command = new ArrayList<String>();
+    command.add(JAVAIMPORTS_BINARY);
+    command.add(String.format("-Djava.home=%s", javaHome));
+    // When running an instrumented binary, keep one profile per fixture (see pgo.sh)
+    var profilesDir = System.getProperty(PGO_PROFILES_DIR);
+    if (profilesDir != null) {
+      command.add(String.format("-XX:ProfilesDumpFile=%s/%s.iprof", profilesDir, name));
+    }
+    command.add(String.format("-repository=%s", repository.toString()));
+    command.add("--fix-only");
+    command.add("-v");
+    command.add(target.toString());
+    return new ProcessBuilder(command)
         .directory(Paths.get(getClass().getResource("/").toURI()).getParent().toFile())
         .start();
   }